@@ -51,7 +51,7 @@ public enum DBFDataType {
 	/**
 	 * Double  value
 	 */
-	DOUBLE           ('O', 8, 8, 0, false),
+	DOUBLE           ('O', 8, 8, 8, true),
 	/**
 	 * To store boolean values.
 	 */
@@ -59,23 +59,23 @@ public enum DBFDataType {
 	/**
 	 * Memo (data is stored in dbt file)
 	 */
-	MEMO             ('M'),
+	MEMO             ('M', 4, 10, 10, true),
 	/**
 	 * Binary (data is stored in dbt file)
 	 */
-	BINARY           ('B'),
+	BINARY           ('B', 4, 10, 10, true),
 	/**
 	 * Blob (VFP 9) (data is stored in fpt file)
 	 */
-	BLOB             ('W'),
+	BLOB             ('W', 4, 4, 4, true),
 	/**
 	 * OLE Objects (data is stored in dbt file)
 	 */
-	GENERAL_OLE      ('G'),
+	GENERAL_OLE      ('G', 4, 10, 10, true),
 	/**
 	 * Picture (FoxPro, data is sotred in dbt file)
 	 */
-	PICTURE          ('P'),
+	PICTURE          ('P', 4, 10, 10, true),
 	/**
 	 * Numeric data
 	 */
@@ -83,23 +83,23 @@ public enum DBFDataType {
 	/**
 	 * Numeric long (FoxPro)
 	 */
-	LONG             ('I', 4, 4, 4, false),
+	LONG             ('I', 4, 4, 4, true),
 	/**
 	 * Autoincrement (same as long, dbase 7)
 	 */
-	AUTOINCREMENT    ('+', 4, 4, 4, false),
+	AUTOINCREMENT    ('+', 4, 4, 4, true),
 	/**
 	 * Currency type (FoxPro)
 	 */
-	CURRENCY         ('Y', 8, 8, 8, false),
+	CURRENCY         ('Y', 8, 8, 8, true),
 	/**
 	 * Timestamp type (FoxPro)
 	 */
-	TIMESTAMP 		 ('T', 8, 8, 8, false),
+	TIMESTAMP 		 ('T', 8, 8, 8, true),
 	/**
 	 * Timestamp type (dbase level 7)
 	 */
-	TIMESTAMP_DBASE7 ('@', 8, 8, 8, false),
+	TIMESTAMP_DBASE7 ('@', 8, 8, 8, true),
 	/**
 	 * Flags
 	 */
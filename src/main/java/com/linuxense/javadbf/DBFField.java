@@ -90,6 +90,7 @@ public class DBFField {
 	private byte[] reserv4 = new byte[7]; /* 24-30 */
 	private byte indexFieldFlag; /* 31 */
 	private String name;
+	private int nextAutoincrementValue = 1; /* 40-43 dBase 7 */
 
 	/**
 	 * Default constructor
@@ -113,6 +114,7 @@ public class DBFField {
 		System.arraycopy(origin.reserv4, 0, this.reserv4, 0, 7);
 		this.indexFieldFlag = origin.indexFieldFlag;
 		this.name = origin.name;
+		this.nextAutoincrementValue = origin.nextAutoincrementValue;
 	}
 
 	/**
@@ -241,7 +243,7 @@ public class DBFField {
 		field.reserv2 = DBFUtils.readLittleEndianShort(in); /* 35-36 */
 		field.workAreaId = in.readByte(); /* 37 */
 		field.reserv3 = DBFUtils.readLittleEndianShort(in); /* 38-39 */
-		in.readInt(); // 40-43 nextAuto
+		field.nextAutoincrementValue = DBFUtils.readLittleEndianInt(in); /* 40-43 */
 		in.readInt(); // 44-47 reserv
 
 		adjustLengthForLongCharSupport(field);
@@ -269,13 +271,21 @@ public class DBFField {
 	 * @throws IOException  if any stream related issues occur.
 	 */
 	protected void write(DataOutput out, Charset charset) throws IOException {
+		write(out, charset, 0);
+	}
+
+	/**
+	 * Writes the field, with the displacement of the field in the record
+	 * used by Visual FoxPro.
+	 */
+	void write(DataOutput out, Charset charset, int displacement) throws IOException {
 		// Field Name
 		out.write(this.name.getBytes(charset)); /* 0-10 */
 		out.write(new byte[11 - this.name.length()]);
 
 		// data type
 		out.writeByte(this.type.getCode()); /* 11 */
-		out.writeInt(0x00); /* 12-15 */
+		out.writeInt(DBFUtils.littleEndian(displacement)); /* 12-15 */
 		out.writeByte(this.length); /* 16 */
 		out.writeByte(this.decimalCount); /* 17 */
 		out.writeShort((short) 0x00); /* 18-19 */
@@ -286,6 +296,22 @@ public class DBFField {
 		out.writeByte((byte) 0x00); /* 31 */
 	}
 
+	/**
+	 * Writes the field as a dBase 7 field descriptor (48 bytes)
+	 */
+	void writeDB7(DataOutput out, Charset charset) throws IOException {
+		out.write(this.name.getBytes(charset)); /* 0-31 */
+		out.write(new byte[32 - this.name.length()]);
+		out.writeByte(this.type.getCode()); /* 32 */
+		out.writeByte(this.length); /* 33 */
+		out.writeByte(this.decimalCount); /* 34 */
+		out.writeShort((short) 0x00); /* 35-36 */
+		out.writeByte((byte) 0x00); /* 37 */
+		out.writeShort((short) 0x00); /* 38-39 */
+		out.writeInt(Integer.reverseBytes(this.nextAutoincrementValue)); /* 40-43 */
+		out.writeInt(0x00); /* 44-47 */
+	}
+
 	/**
 	 * Returns the name of the field.
 	 *
@@ -453,6 +479,24 @@ public class DBFField {
 		this.decimalCount = (byte) size;
 	}
 
+	/**
+	 * Gets the next value of an autoincrement field
+	 * @return the next value
+	 */
+	public int getNextAutoincrementValue() {
+		return this.nextAutoincrementValue;
+	}
+
+	/**
+	 * Sets the next value of an autoincrement field (default 1). DBFWriter
+	 * assigns it to records added with a null value in the field and
+	 * increments it; it is stored in the header of dBase 7 files.
+	 * @param nextAutoincrementValue the next value
+	 */
+	public void setNextAutoincrementValue(int nextAutoincrementValue) {
+		this.nextAutoincrementValue = nextAutoincrementValue;
+	}
+
 	/**
 	 * Checks if is a system field
 	 * @return true if it is a system field
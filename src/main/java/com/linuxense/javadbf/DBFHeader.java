@@ -40,6 +40,20 @@ import java.util.List;
 public class DBFHeader {
 
 	public static final byte SIG_DBASE_III = (byte) 0x03;
+	/** dBase IV with memo file (DBT) */
+	public static final byte SIG_DBASE_IV_MEMO = (byte) 0x8B;
+	/** FoxPro 2.x with memo file (FPT) */
+	public static final byte SIG_FOXPRO_MEMO = (byte) 0xF5;
+	/** Visual FoxPro */
+	public static final byte SIG_VISUAL_FOXPRO = (byte) 0x30;
+	/** dBase level 7 */
+	public static final byte SIG_DBASE_7 = (byte) 0x04;
+	/** dBase level 7 with memo file (DBT) */
+	public static final byte SIG_DBASE_7_MEMO = (byte) 0x8C;
+
+	private static final String DBASE_7_FPT_MESSAGE = "dBase 7 tables (autoincrement or dBase 7 timestamp fields) "
+			+ "can only use DBT memo files";
+
 	/* DBF structure start here */
 
 	private byte signature;              /* 0 */
@@ -68,6 +82,8 @@ public class DBFHeader {
 
 
 	private static final int DBASE_LEVEL_7 = 4;
+	private static final int VFP_BACKLINK_SIZE = 263;
+	private static final byte VFP_HAS_MEMO = 0x02;
 
 	protected DBFHeader() {
 		this.signature = SIG_DBASE_III;
@@ -166,10 +182,85 @@ public class DBFHeader {
 		}
 		return 32;
 	}
-	private boolean isDB7() {
+	boolean isDB7() {
 		return (this.signature & 0x7) == DBASE_LEVEL_7;
 	}
 
+	/**
+	 * Checks that the table can use a memo file of the given format
+	 * @param fpt true for FPT files, false for DBT files
+	 */
+	void checkMemoFormat(boolean fpt) {
+		if (fpt && isDB7()) {
+			throw new DBFException(DBASE_7_FPT_MESSAGE);
+		}
+	}
+
+	/**
+	 * Marks the table as having a memo file, if it is a plain dBase III table
+	 * @param fpt true for FoxPro memo files, false for DBT memo files
+	 */
+	void setMemoSignature(boolean fpt) {
+		if (this.signature == SIG_DBASE_III) {
+			this.signature = fpt ? SIG_FOXPRO_MEMO : SIG_DBASE_IV_MEMO;
+		}
+		else if (this.signature == SIG_DBASE_7) {
+			this.signature = SIG_DBASE_7_MEMO;
+		}
+		else if (this.signature == SIG_VISUAL_FOXPRO) {
+			this.mdxFlag |= VFP_HAS_MEMO;
+		}
+	}
+
+	/**
+	 * Sets the signature of a new table from the types of its fields: dBase 7
+	 * for autoincrement and dBase 7 timestamp fields, Visual FoxPro for the
+	 * other binary types (long, double, currency and timestamp).
+	 */
+	void setFieldsSignature() {
+		boolean dbase7 = false;
+		boolean visualFoxPro = false;
+		boolean binary = false;
+		for (DBFField field : this.fieldArray) {
+			switch (field.getType()) {
+			case AUTOINCREMENT:
+			case TIMESTAMP_DBASE7:
+				dbase7 = true;
+				break;
+			case CURRENCY:
+			case TIMESTAMP:
+				visualFoxPro = true;
+				break;
+			case LONG:
+			case DOUBLE:
+				binary = true;
+				break;
+			default:
+				break;
+			}
+		}
+		if (dbase7 && visualFoxPro) {
+			throw new DBFException("dBase 7 and Visual FoxPro field types can not be mixed");
+		}
+		boolean memo = this.signature == SIG_DBASE_IV_MEMO || this.signature == SIG_FOXPRO_MEMO;
+		if (dbase7 && this.signature == SIG_FOXPRO_MEMO) {
+			throw new DBFException(DBASE_7_FPT_MESSAGE);
+		}
+		if (dbase7) {
+			this.signature = memo ? SIG_DBASE_7_MEMO : SIG_DBASE_7;
+		}
+		else if (visualFoxPro || binary) {
+			this.signature = SIG_VISUAL_FOXPRO;
+			if (memo) {
+				this.mdxFlag |= VFP_HAS_MEMO;
+			}
+		}
+	}
+
+	private boolean isVisualFoxPro() {
+		return this.signature == 0x30 || this.signature == 0x31 || this.signature == 0x32;
+	}
+
 	void write(DataOutput dataOutput) throws IOException {
 		dataOutput.writeByte(this.signature); /* 0 */
 
@@ -216,14 +307,31 @@ public class DBFHeader {
 			dataOutput.writeByte(0);
 		}
 		dataOutput.writeShort(DBFUtils.littleEndian(this.reserv4)); /* 30-31 */
-		for (DBFField field : this.fieldArray) {
-			field.write(dataOutput,getUsedCharset());
+		if (isDB7()) {
+			dataOutput.write(new byte[32]); /* 32-63 language driver name */
+			dataOutput.writeInt(0); /* 64-67 */
+			for (DBFField field : this.fieldArray) {
+				field.writeDB7(dataOutput, getUsedCharset());
+			}
+		}
+		else {
+			int displacement = 1;
+			for (DBFField field : this.fieldArray) {
+				field.write(dataOutput, getUsedCharset(), isVisualFoxPro() ? displacement : 0);
+				displacement += field.getLength();
+			}
 		}
 		dataOutput.writeByte(this.terminator1); /* n+1 */
+		if (oldHeaderLength == 0 && isVisualFoxPro()) {
+			// backlink to the database container, empty for free tables
+			dataOutput.write(new byte[VFP_BACKLINK_SIZE]);
+		}
 	}
 
 	private short findHeaderLength() {
-
+		if (isDB7()) {
+			return (short) (getTableHeaderSize() + getFieldDescriptorSize() * this.fieldArray.length + 1);
+		}
 		return (short)(
 		1+
 		3+
@@ -240,7 +348,8 @@ public class DBFHeader {
 		1+
 		2+
 		(32*this.fieldArray.length)+
-		1
+		1+
+		(isVisualFoxPro() ? VFP_BACKLINK_SIZE : 0)
 		);
 	}
 
@@ -0,0 +1,101 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.util.Map;
+
+/**
+ * DBFRow that keeps the raw bytes of the record and decodes each column the
+ * first time it is accessed. Numeric columns read with the primitive getters
+ * are parsed directly from the bytes, without creating a BigDecimal, and date
+ * and timestamp columns read with {@link #getDateAsInt(int)} and
+ * {@link #getTimestampMillis(int)} without creating a Date.
+ *
+ * This class is for internal usage for JavaDBF.
+ */
+class DBFLazyRow extends DBFRow {
+
+	private final DBFReader reader;
+	private final byte[] record;
+	private final int[] fieldIndexes;
+	private final Object[] values;
+	private final boolean[] decoded;
+
+	DBFLazyRow(DBFReader reader, byte[] record, int[] fieldIndexes, Map<String, Integer> mapcolumnNames, DBFField[] fields) {
+		this(reader, record, fieldIndexes, new Object[fieldIndexes.length], mapcolumnNames, fields);
+	}
+
+	private DBFLazyRow(DBFReader reader, byte[] record, int[] fieldIndexes, Object[] values, Map<String, Integer> mapcolumnNames, DBFField[] fields) {
+		super(values, mapcolumnNames, fields, reader.getTimeZone());
+		this.reader = reader;
+		this.record = record;
+		this.fieldIndexes = fieldIndexes;
+		this.values = values;
+		this.decoded = new boolean[fieldIndexes.length];
+	}
+
+	@Override
+	public Object getObject(int columnIndex) {
+		if (!this.decoded[columnIndex]) {
+			this.values[columnIndex] = this.reader.decodeColumn(this.fieldIndexes[columnIndex], this.record, 0);
+			this.decoded[columnIndex] = true;
+		}
+		return this.values[columnIndex];
+	}
+
+	@Override
+	public int getInt(int columnIndex) {
+		if (!this.decoded[columnIndex] && this.reader.isNumericStoredAsText(this.fieldIndexes[columnIndex])) {
+			return (int) this.reader.decodeLong(this.fieldIndexes[columnIndex], this.record, 0);
+		}
+		return super.getInt(columnIndex);
+	}
+
+	@Override
+	public long getLong(int columnIndex) {
+		if (!this.decoded[columnIndex] && this.reader.isNumericStoredAsText(this.fieldIndexes[columnIndex])) {
+			return this.reader.decodeLong(this.fieldIndexes[columnIndex], this.record, 0);
+		}
+		return super.getLong(columnIndex);
+	}
+
+	@Override
+	public int getDateAsInt(int columnIndex) {
+		if (!this.decoded[columnIndex] && this.reader.isDateField(this.fieldIndexes[columnIndex])) {
+			return this.reader.decodeDateAsInt(this.fieldIndexes[columnIndex], this.record, 0);
+		}
+		return super.getDateAsInt(columnIndex);
+	}
+
+	@Override
+	public long getTimestampMillis(int columnIndex) {
+		if (!this.decoded[columnIndex] && this.reader.isTimestampField(this.fieldIndexes[columnIndex])) {
+			return this.reader.decodeTimestampMillis(this.fieldIndexes[columnIndex], this.record, 0);
+		}
+		return super.getTimestampMillis(columnIndex);
+	}
+
+	@Override
+	public double getDouble(int columnIndex) {
+		if (!this.decoded[columnIndex] && this.reader.isNumericStoredAsText(this.fieldIndexes[columnIndex])) {
+			return this.reader.decodeDouble(this.fieldIndexes[columnIndex], this.record, 0);
+		}
+		return super.getDouble(columnIndex);
+	}
+}
@@ -21,16 +21,47 @@ package com.linuxense.javadbf;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
 
 
 /**
  * DBFWriter which obtain a lock on the file prior writting on it.
- *
+ * <p>
+ * Records are appended after the last record counted in the header of the
+ * file, and the header is updated, while holding the lock, so several
+ * processes can append to the same file. Records can be added in batches:
+ * each batch is written with the lock taken once, with one write for the
+ * records and one update of the header. Memo files can not be shared.
+ * </p>
+ * <p>
+ * Values of autoincrement fields left null are assigned when the records
+ * are written, while holding the lock, from the next values stored in the
+ * header of the file, so several processes can add records to a dBase 7
+ * table with autoincrement fields.
+ * </p>
  */
 public class DBFLockWriter extends DBFWriter {
 
+	private static final int ITERATOR_BATCH_SIZE = 1000;
+
+	private int batchSize = 1;
+	private long flushInterval = 0;
+	private ByteBuffer pending = null;
+	private int pendingCount = 0;
+	private long pendingSince = 0;
+	private boolean hasAutoincrement = false;
+	private boolean[] autoincrementFields = null;
+	/** autoincrement values of pending records to assign when writing, index record * fieldCount + field */
+	private final BitSet assignedAutoincrement = new BitSet();
+	/** autoincrement values given in pending records, same index */
+	private int[] givenAutoincrement = new int[0];
 
 	public DBFLockWriter(File dbfFile) {
 		super(dbfFile);
@@ -42,18 +73,109 @@ public class DBFLockWriter extends DBFWriter {
 
 	@Override
 	public void addRecord(Object[] values) {
-		if (this.isClosed()) {
-			throw new IllegalStateException("You can add records a closed DBFWriter");
+		checkRecord(values);
+		addPending(values);
+		if (this.pendingCount >= this.batchSize
+				|| (this.flushInterval > 0 && System.currentTimeMillis() - this.pendingSince >= this.flushInterval)) {
+			commit();
 		}
-		try {
-			FileLock lock = this.getRamdonAccessFile().getChannel().lock();
-			super.addRecord(values);
-			if (lock.isValid()) {
-				lock.release();
+	}
+
+	/**
+	 * Adds a batch of records. All the records are checked before writing
+	 * any of them, and they are written with the lock taken once, together
+	 * with the records pending from {@link #addRecord(Object[])}. If the
+	 * batch is not written, memo values already written for its records are left
+	 * unreferenced in the memo file.
+	 * @param records the records to add
+	 */
+	public void addRecords(List<Object[]> records) {
+		for (Object[] values : records) {
+			checkRecord(values);
+		}
+		addPendingBatch(records);
+		commit();
+	}
+
+	/**
+	 * Adds the records returned by an iterator, written in batches of
+	 * {@link #getBatchSize()} records (1000 if the batch size is 1). The
+	 * records of a batch are all checked before encoding any of them; if a
+	 * record is not valid, the records of its batch are not written and
+	 * the previous batches are kept, as in {@link #addRecords(List)}.
+	 * @param records the records to add
+	 */
+	public void addRecords(Iterator<Object[]> records) {
+		int size = this.batchSize > 1 ? this.batchSize : ITERATOR_BATCH_SIZE;
+		List<Object[]> batch = new ArrayList<Object[]>(Math.min(size, ITERATOR_BATCH_SIZE));
+		while (records.hasNext()) {
+			Object[] values = records.next();
+			checkRecord(values);
+			// the iterator can reuse the array
+			batch.add(values.clone());
+			if (this.pendingCount + batch.size() >= size) {
+				addPendingBatch(batch);
+				batch.clear();
+				commit();
 			}
 		}
-		catch (IOException ioe) {
-			throw new DBFException(ioe.getMessage(), ioe);
+		addPendingBatch(batch);
+		commit();
+	}
+
+	/**
+	 * Gets the number of records added with {@link #addRecord(Object[])}
+	 * that are written together
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Sets the number of records added with {@link #addRecord(Object[])}
+	 * that are written together (default 1, each record is written when
+	 * added). Pending records are written when the batch is full, when the
+	 * flush interval expires, on flush and on close.
+	 * @param batchSize the number of records
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Gets the maximum time records added with {@link #addRecord(Object[])}
+	 * are kept pending
+	 * @return the flush interval in milliseconds, 0 if disabled
+	 */
+	public long getFlushInterval() {
+		return this.flushInterval;
+	}
+
+	/**
+	 * Sets the maximum time records added with {@link #addRecord(Object[])}
+	 * are kept pending (default 0, disabled). It is checked when a record is
+	 * added: if the oldest pending record is older, the batch is written
+	 * even if it is not full.
+	 * @param flushInterval the flush interval in milliseconds, 0 to disable it
+	 */
+	public void setFlushInterval(long flushInterval) {
+		if (flushInterval < 0) {
+			throw new IllegalArgumentException("Flush interval cannot be negative");
+		}
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Writes the pending records to the file
+	 */
+	@Override
+	public void flush() {
+		if (!this.isClosed() && this.pendingCount > 0) {
+			commit();
 		}
 	}
 
@@ -62,12 +184,117 @@ public class DBFLockWriter extends DBFWriter {
 		if (this.isClosed()) {
 			return;
 		}
+		try {
+			commit();
+		}
+		finally {
+			close(false);
+		}
+	}
 
+	/**
+	 * Encodes checked records as pending, discarding all of them and
+	 * restoring the autoincrement values if one can not be encoded
+	 */
+	private void addPendingBatch(List<Object[]> records) {
+		int markCount = this.pendingCount;
+		int markPosition = this.pending != null ? this.pending.position() : 0;
+		int[] autoincrementValues = getAutoincrementValues();
+		try {
+			for (Object[] values : records) {
+				addPending(values);
+			}
+		}
+		catch (RuntimeException e) {
+			this.pendingCount = markCount;
+			if (this.pending != null) {
+				this.pending.position(markPosition);
+			}
+			setAutoincrementValues(autoincrementValues);
+			throw e;
+		}
+	}
+
+	private void addPending(Object[] values) {
+		byte[] record = encodeRecord(values);
+		if (this.pending == null || this.pending.remaining() < record.length) {
+			int capacity = Math.max(record.length * Math.max(this.batchSize, 16), this.pending != null ? this.pending.capacity() * 2 : 0);
+			ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			if (this.pending != null) {
+				this.pending.flip();
+				buffer.put(this.pending);
+			}
+			this.pending = buffer;
+		}
+		if (this.pendingCount == 0) {
+			this.pendingSince = System.currentTimeMillis();
+		}
+		this.pending.put(record);
+		trackAutoincrement(values);
+		this.pendingCount++;
+	}
+
+	/**
+	 * Records which autoincrement values of a pending record are assigned
+	 * when writing it, and which are given
+	 */
+	private void trackAutoincrement(Object[] values) {
+		initAutoincrement();
+		if (!this.hasAutoincrement) {
+			return;
+		}
+		int start = this.pendingCount * this.autoincrementFields.length;
+		if (this.givenAutoincrement.length < start + this.autoincrementFields.length) {
+			this.givenAutoincrement = Arrays.copyOf(this.givenAutoincrement, Math.max(start + this.autoincrementFields.length, this.givenAutoincrement.length * 2));
+		}
+		for (int i = 0; i < this.autoincrementFields.length; i++) {
+			if (!this.autoincrementFields[i]) {
+				continue;
+			}
+			if (values[i] == null) {
+				this.assignedAutoincrement.set(start + i);
+			}
+			else {
+				this.assignedAutoincrement.clear(start + i);
+				this.givenAutoincrement[start + i] = ((Number) values[i]).intValue();
+			}
+		}
+	}
+
+	private void initAutoincrement() {
+		if (this.autoincrementFields == null) {
+			boolean[] fields = getAutoincrementFields();
+			if (fields.length == 0) {
+				// fields not set yet
+				return;
+			}
+			this.autoincrementFields = fields;
+			for (boolean autoincrement : fields) {
+				this.hasAutoincrement |= autoincrement;
+			}
+		}
+	}
+
+	private void commit() {
+		if (this.isClosed()) {
+			throw new IllegalStateException("You can add records a closed DBFWriter");
+		}
 		try {
 			FileLock lock = this.getRamdonAccessFile().getChannel().lock();
-			super.close();
-			if (lock.isValid()) {
-				lock.release();
+			try {
+				initAutoincrement();
+				if (this.hasAutoincrement) {
+					// also when there are no records, as the header is rewritten
+					renumberAutoincrementValues(this.pending, this.pendingCount, this.assignedAutoincrement, this.givenAutoincrement);
+				}
+				commitRecords(this.pending, this.pendingCount);
+				this.pendingCount = 0;
+				this.assignedAutoincrement.clear();
+			}
+			finally {
+				if (lock.isValid()) {
+					lock.release();
+				}
 			}
 		}
 		catch (IOException ioe) {
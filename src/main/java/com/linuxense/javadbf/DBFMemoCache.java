@@ -0,0 +1,169 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the values read from a memo file, bounded by size and evicting the
+ * least recently used values.
+ * <p>
+ * Values are kept decoded, text as String and binary data as byte[] (a copy is
+ * returned on each read). The size of a text value is two bytes per character.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public class DBFMemoCache {
+
+	private final long maxSize;
+	private final LinkedHashMap<Long, Object> entries = new LinkedHashMap<Long, Object>(16, 0.75f, true);
+	private long size = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	DBFMemoCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets a value from the cache
+	 * @param block first block of the value
+	 * @param type type requested for the value
+	 * @return the value, or null if it is not in the cache
+	 */
+	synchronized Object get(int block, DBFDataType type) {
+		Object value = this.entries.get(key(block, type));
+		if (value == null) {
+			this.missCount++;
+			return null;
+		}
+		this.hitCount++;
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		return value;
+	}
+
+	/**
+	 * Puts a value in the cache, evicting the least recently used values if
+	 * needed. Values bigger than the cache are not stored.
+	 * @param block first block of the value
+	 * @param type type requested for the value
+	 * @param value the value, String or byte[]
+	 */
+	synchronized void put(int block, DBFDataType type, Object value) {
+		long valueSize = sizeOf(value);
+		if (valueSize > this.maxSize) {
+			return;
+		}
+		if (value instanceof byte[]) {
+			value = ((byte[]) value).clone();
+		}
+		Object previous = this.entries.put(key(block, type), value);
+		if (previous != null) {
+			this.size -= sizeOf(previous);
+		}
+		this.size += valueSize;
+		Iterator<Map.Entry<Long, Object>> it = this.entries.entrySet().iterator();
+		while (this.size > this.maxSize && it.hasNext()) {
+			Map.Entry<Long, Object> eldest = it.next();
+			this.size -= sizeOf(eldest.getValue());
+			it.remove();
+			this.evictionCount++;
+		}
+	}
+
+	/**
+	 * Removes all the values from the cache. Counters are not reset.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the maximum size of the values in the cache
+	 * @return the maximum size in bytes
+	 */
+	public long getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Gets the current size of the values in the cache
+	 * @return the size in bytes
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the number of values in the cache
+	 * @return the number of values
+	 */
+	public synchronized int getEntryCount() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Gets the number of reads served from the cache
+	 * @return number of hits
+	 */
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Gets the number of reads not found in the cache
+	 * @return number of misses
+	 */
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Gets the number of values removed to make room for new ones
+	 * @return number of evictions
+	 */
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	private static Long key(int block, DBFDataType type) {
+		return Long.valueOf(((long) block << 8) | type.ordinal());
+	}
+
+	private static long sizeOf(Object value) {
+		if (value instanceof String) {
+			return ((String) value).length() * 2L;
+		}
+		return ((byte[]) value).length;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DBFMemoCache[size=" + this.size + ", maxSize=" + this.maxSize + ", entries=" + this.entries.size()
+			+ ", hits=" + this.hitCount + ", misses=" + this.missCount + ", evictions=" + this.evictionCount + "]";
+	}
+}
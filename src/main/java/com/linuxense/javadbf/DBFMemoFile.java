@@ -21,40 +21,105 @@ package com.linuxense.javadbf;
 
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Class for read memo files (DBT and FPT)
+ * <p>
+ * The file is kept open until {@link #close()} is called, and all reads are
+ * positional, so one instance can be used from several threads.
+ * </p>
  */
-public class DBFMemoFile {
+public class DBFMemoFile implements Closeable {
+
+	private static final int HEADER_SIZE = 8;
+	private static final byte END_OF_MEMO = 0x1A;
+	private static final long END_OF_MEMO_WORD = 0x1A1A1A1A1A1A1A1AL;
+	private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+	private static final long MAX_SEGMENT_SIZE = 1 << 30;
 
 	private File memoFile = null;
 	private Charset charset = null;
 	private int blockSize = 512;
 	private boolean fpt = false;
+	private FileChannel channel;
+	private DBFMemoCache cache = null;
+	private boolean lazy = false;
+	private int readAheadSize = 0;
+	/** read-ahead windows of the threads reading the file */
+	private final Map<Thread, ReadAheadWindow> windows = new WeakHashMap<Thread, ReadAheadWindow>();
+	private MappedByteBuffer[] segments = null;
+	private long segmentSize;
+	private long fileSize;
 
 	protected DBFMemoFile(File memoFile, Charset charset) {
+		this(memoFile, charset, new DBFMemoOptions());
+	}
+
+	protected DBFMemoFile(File memoFile, Charset charset, DBFMemoOptions options) {
+		this(memoFile, charset, options, MAX_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Only for testing purposes, to map the file in small segments
+	 */
+	DBFMemoFile(File memoFile, Charset charset, DBFMemoOptions options, long segmentSize) {
+		this.lazy = options.isLazy();
+		this.readAheadSize = options.getReadAheadSize();
+		if (options.getCacheSize() > 0) {
+			this.cache = new DBFMemoCache(options.getCacheSize());
+		}
 		this.memoFile = memoFile;
 		this.charset = charset;
 		this.fpt = memoFile.getName().toLowerCase().endsWith(".fpt");
-		readBlockSize();
+		try {
+			this.channel = new RandomAccessFile(memoFile, "r").getChannel();
+		}
+		catch (FileNotFoundException e) {
+			throw new DBFException("Memo file " + memoFile.getName() + " not exists", e);
+		}
+		try {
+			if (options.isMemoryMapped()) {
+				this.segmentSize = segmentSize;
+				this.fileSize = this.channel.size();
+				this.segments = new MappedByteBuffer[(int) ((this.fileSize + segmentSize - 1) / segmentSize)];
+			}
+			readBlockSize();
+		}
+		catch (IOException e) {
+			DBFUtils.close(this.channel);
+			throw new DBFException(e.getMessage(), e);
+		}
+		catch (RuntimeException e) {
+			DBFUtils.close(this.channel);
+			throw e;
+		}
 	}
+
 	private void readBlockSize() {
-		RandomAccessFile file = null;
 		try {
-			file = new RandomAccessFile(memoFile, "r");
-
+			ByteBuffer header = ByteBuffer.allocate(2);
 			if (isFPT()) {
-				file.seek(6);
-				this.blockSize = file.readShort();
+				readFully(header, 6);
+				this.blockSize = header.getShort(0);
 			}
 			else {
-				file.seek(20);
-				this.blockSize = DBFUtils.readLittleEndianShort(file);
+				readFully(header, 20);
+				this.blockSize = DBFUtils.littleEndian(header.getShort(0));
 			}
 			if (this.blockSize == 0) {
 				this.blockSize = 512;
@@ -62,10 +127,7 @@ public class DBFMemoFile {
 
 		}
 		catch (IOException ex) {
-			throw new RuntimeException(ex);
-		}
-		finally {
-			DBFUtils.close(file);
+			throw new DBFException(ex.getMessage(), ex);
 		}
 	}
 
@@ -91,61 +153,63 @@ public class DBFMemoFile {
 	}
 
 	protected Object readData(int block, DBFDataType type) {
-		RandomAccessFile file = null;
+		if (this.cache == null) {
+			return readDataFromFile(block, type);
+		}
+		Object value = this.cache.get(block, type);
+		if (value == null) {
+			value = readDataFromFile(block, type);
+			this.cache.put(block, type, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the cache of values of this file
+	 * @return the cache, or null if values are not cached
+	 */
+	DBFMemoCache getCache() {
+		return this.cache;
+	}
+
+	private Object readDataFromFile(int block, DBFDataType type) {
 		long blockStart = this.blockSize * (long) block;
 		DBFDataType usedType = type;
 		try {
-			file = new RandomAccessFile(memoFile, "r");
-			file.seek(blockStart);
-			byte[] blockData = new byte[this.blockSize];
-			ByteArrayOutputStream baos = new ByteArrayOutputStream(this.blockSize);
-			boolean end = false;
-
-			int itemSize = Integer.MAX_VALUE;
-			boolean firstBlock = true;
-			boolean checkForEndMark = true;
-			while (!end) {
-				int endIndex = file.read(blockData);
-				if (endIndex <= 0) {
-					break;
+			ByteBuffer blockData = ByteBuffer.allocate(this.blockSize);
+			int readed = readFully(blockData, blockStart);
+			byte[] firstBlock = blockData.array();
+			byte[] data;
+			if (readed >= HEADER_SIZE && (isFPT() || isMagicDBase4(firstBlock))) {
+				int itemSize;
+				if (isFPT()) {
+					usedType = fptType(firstBlock[3], type);
+					itemSize = blockData.getInt(4);
 				}
-				int initialIndex = 0;
-				if (firstBlock && (isFPT() || isMagicDBase4(blockData))) {
-					initialIndex = 8;
-					checkForEndMark = false;
-					if (isFPT()) {
-						int intType = blockData[3];
-						// 01 is text, other are binary
-						if (intType == 1) {
-							usedType = DBFDataType.MEMO;
-						}
-						else if (intType == 2) {
-							usedType = DBFDataType.BINARY;
-						}
-						else if (intType == 0) {
-							usedType = DBFDataType.PICTURE;
-						}
-
-						itemSize = ByteBuffer.wrap(new byte[]{blockData[4], blockData[5], blockData[6], blockData[7]}).getInt();
-					}
-					else {
-						itemSize = ByteBuffer.wrap(new byte[]{blockData[7], blockData[6], blockData[5], blockData[4]}).getInt() - 8;
-					}
-					endIndex = Math.min(itemSize + 8, endIndex);
+				else {
+					itemSize = DBFUtils.readLittleEndianInt(firstBlock, 4) - HEADER_SIZE;
 				}
-				firstBlock = false;
-				for (int i = initialIndex; i < endIndex && baos.size() < itemSize; i++) {
-					baos.write(blockData[i]);
-					if (checkForEndMark && i < endIndex -2 && blockData[i+1] == 0x1A && blockData[i+2] == 0x1A){
-						end = true;
-						break;
-					}
-					if (!checkForEndMark) {
-						end = baos.size() >= itemSize;
+				data = readItem(firstBlock, readed, blockStart, itemSize);
+			}
+			else if (this.segments != null) {
+				data = new byte[scanMappedUntilEndMark(blockStart)];
+				readFully(ByteBuffer.wrap(data), blockStart);
+			}
+			else {
+				int end = indexOfEndMark(blockData, 1, readed);
+				if (end >= 0) {
+					// usual case, the value is in the first block
+					data = Arrays.copyOf(firstBlock, end);
+				}
+				else {
+					ByteArrayOutputStream baos = new ByteArrayOutputStream(2 * this.blockSize);
+					int size = scanUntilEndMark(blockData, readed, blockStart, baos);
+					data = baos.toByteArray();
+					if (data.length != size) {
+						data = Arrays.copyOf(data, size);
 					}
 				}
 			}
-			byte[] data = baos.toByteArray();
 			if (usedType != DBFDataType.MEMO) {
 				return data;
 			}
@@ -153,14 +217,439 @@ public class DBFMemoFile {
 
 		}
 		catch (IOException ex) {
-			throw new RuntimeException(ex);
+			throw new DBFException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Type of a FPT value, from the type stored in its header
+	 */
+	private static DBFDataType fptType(int intType, DBFDataType type) {
+		// 01 is text, other are binary
+		if (intType == 1) {
+			return DBFDataType.MEMO;
+		}
+		else if (intType == 2) {
+			return DBFDataType.BINARY;
+		}
+		else if (intType == 0) {
+			return DBFDataType.PICTURE;
+		}
+		return type;
+	}
+
+	/**
+	 * Reads a value whose size is known from its header. The data is copied in
+	 * bulk, including the part already read with the first block.
+	 */
+	private byte[] readItem(byte[] firstBlock, int readed, long blockStart, int itemSize) throws IOException {
+		long available = this.channel.size() - blockStart - HEADER_SIZE;
+		int size = (int) Math.max(0, Math.min(itemSize, available));
+		byte[] data = new byte[size];
+		int inFirstBlock = Math.min(size, readed - HEADER_SIZE);
+		System.arraycopy(firstBlock, HEADER_SIZE, data, 0, inFirstBlock);
+		if (inFirstBlock < size) {
+			ByteBuffer rest = ByteBuffer.wrap(data, inFirstBlock, size - inFirstBlock);
+			readFully(rest, blockStart + HEADER_SIZE + inFirstBlock);
 		}
-		finally {
-			DBFUtils.close(file);
+		return data;
+	}
+
+	/**
+	 * Scans a dBase III value, ended with two 0x1A bytes, block by block.
+	 * @param blockData buffer with the first block of the value
+	 * @param readed bytes readed in the first block
+	 * @param blockStart position of the value in the file
+	 * @param out if not null, the blocks are copied to it. It can contain
+	 *        one more byte than the value.
+	 * @return the length of the value
+	 */
+	private int scanUntilEndMark(ByteBuffer blockData, int readed, long blockStart, ByteArrayOutputStream out) throws IOException {
+		byte[] block = blockData.array();
+		long position = blockStart;
+		int length = readed;
+		int total = 0;
+		// last byte of the previous block, to find end marks between two blocks
+		boolean previousIsEndMark = false;
+		while (length > 0) {
+			if (previousIsEndMark && block[0] == END_OF_MEMO && total > 1) {
+				return total - 1;
+			}
+			// the first byte is part of the value, even if it is an end mark
+			int end = indexOfEndMark(blockData, position == blockStart ? 1 : 0, length);
+			if (end >= 0) {
+				if (out != null) {
+					out.write(block, 0, end);
+				}
+				return total + end;
+			}
+			if (out != null) {
+				out.write(block, 0, length);
+			}
+			total += length;
+			previousIsEndMark = block[length - 1] == END_OF_MEMO;
+			position += length;
+			blockData.clear();
+			length = readFully(blockData, position);
 		}
+		return total;
+	}
 
+	/**
+	 * Finds two consecutive 0x1A bytes, comparing eight bytes at a time.
+	 * @param buffer buffer to scan
+	 * @param from first index where the end mark can start
+	 * @param to end of the scanned range (exclusive)
+	 * @return the index of the first end mark, or -1 if not found
+	 */
+	static int indexOfEndMark(ByteBuffer buffer, int from, int to) {
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		int i = from;
+		// the last byte of the previous word is a 0x1A
+		boolean previousIsEndMark = false;
+		for (; i + 8 <= to; i += 8) {
+			long word = buffer.getLong(i);
+			// first byte in the lowest bits
+			long x = (bigEndian ? Long.reverseBytes(word) : word) ^ END_OF_MEMO_WORD;
+			// high bit set in the bytes that are 0x1A
+			long marks = ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+			if (marks != 0) {
+				if (previousIsEndMark && (marks & 0x80L) != 0) {
+					return i - 1;
+				}
+				long pairs = marks & (marks >>> 8);
+				if (pairs != 0) {
+					return i + (Long.numberOfTrailingZeros(pairs) >>> 3);
+				}
+			}
+			previousIsEndMark = marks < 0;
+		}
+		if (previousIsEndMark && i < to && buffer.get(i) == END_OF_MEMO) {
+			return i - 1;
+		}
+		for (; i < to - 1; i++) {
+			if (buffer.get(i) == END_OF_MEMO && buffer.get(i + 1) == END_OF_MEMO) {
+				return i;
+			}
+		}
+		return -1;
 	}
+
+	/**
+	 * Scans a dBase III value, ended with two 0x1A bytes, directly over the
+	 * mapped segments.
+	 * @param start position of the value in the file
+	 * @return the length of the value
+	 */
+	private int scanMappedUntilEndMark(long start) {
+		long position = start;
+		// last byte of the previous segment, to find end marks between two segments
+		boolean previousIsEndMark = false;
+		while (position < this.fileSize) {
+			int segmentIndex = (int) (position / this.segmentSize);
+			long segmentStart = segmentIndex * this.segmentSize;
+			MappedByteBuffer segment = getSegment(segmentIndex);
+			int from = (int) (position - segmentStart);
+			int to = segment.limit();
+			if (previousIsEndMark && segment.get(from) == END_OF_MEMO && position - 1 > start) {
+				return (int) (position - 1 - start);
+			}
+			// the first byte is part of the value, even if it is an end mark
+			int end = indexOfEndMark(segment, position == start ? from + 1 : from, to);
+			if (end >= 0) {
+				return (int) (segmentStart + end - start);
+			}
+			previousIsEndMark = segment.get(to - 1) == END_OF_MEMO;
+			position = segmentStart + to;
+		}
+		return (int) Math.max(0, this.fileSize - start);
+	}
+
+	/**
+	 * Finds the position, length and type of a value, without reading it
+	 * @param block first block of the value
+	 * @param type type of the field
+	 * @return the location of the value
+	 */
+	MemoItem locate(int block, DBFDataType type) {
+		long blockStart = this.blockSize * (long) block;
+		try {
+			ByteBuffer blockData = ByteBuffer.allocate(this.blockSize);
+			int readed = readFully(blockData, blockStart);
+			byte[] firstBlock = blockData.array();
+			if (readed >= HEADER_SIZE && (isFPT() || isMagicDBase4(firstBlock))) {
+				DBFDataType usedType = type;
+				int itemSize;
+				if (isFPT()) {
+					usedType = fptType(firstBlock[3], type);
+					itemSize = blockData.getInt(4);
+				}
+				else {
+					itemSize = DBFUtils.readLittleEndianInt(firstBlock, 4) - HEADER_SIZE;
+				}
+				long available = this.channel.size() - blockStart - HEADER_SIZE;
+				int size = (int) Math.max(0, Math.min(itemSize, available));
+				return new MemoItem(blockStart + HEADER_SIZE, size, usedType);
+			}
+			if (this.segments != null) {
+				return new MemoItem(blockStart, scanMappedUntilEndMark(blockStart), type);
+			}
+			return new MemoItem(blockStart, scanUntilEndMark(blockData, readed, blockStart, null), type);
+		}
+		catch (IOException ex) {
+			throw new DBFException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Reads the raw bytes of a value
+	 * @param item location of the value
+	 * @return the bytes of the value
+	 */
+	byte[] readBytes(MemoItem item) {
+		byte[] data = new byte[item.length];
+		try {
+			int readed = readFully(ByteBuffer.wrap(data), item.position);
+			if (readed < data.length) {
+				throw new EOFException("Unexpected end of file");
+			}
+		}
+		catch (IOException ex) {
+			throw new DBFException(ex.getMessage(), ex);
+		}
+		return data;
+	}
+
+	/**
+	 * Gets the bytes of a value as a read only buffer. If the file is memory
+	 * mapped and the value is inside one segment the buffer is a slice of the
+	 * mapping, without copying the value.
+	 * @param item location of the value
+	 * @return the value
+	 */
+	ByteBuffer readBuffer(MemoItem item) {
+		if (this.segments != null && item.length > 0) {
+			int segmentIndex = (int) (item.position / this.segmentSize);
+			long offset = item.position - segmentIndex * this.segmentSize;
+			if (offset + item.length <= this.segmentSize) {
+				ByteBuffer slice = getSegment(segmentIndex).duplicate();
+				slice.position((int) offset);
+				slice.limit((int) offset + item.length);
+				return slice.slice().asReadOnlyBuffer();
+			}
+		}
+		return ByteBuffer.wrap(readBytes(item)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Opens a stream over the bytes of a value
+	 * @param item location of the value
+	 * @return the stream
+	 */
+	InputStream openStream(MemoItem item) {
+		return new MemoInputStream(item.position, item.position + item.length);
+	}
+
+	Charset getCharset() {
+		return this.charset;
+	}
+
+	boolean isLazy() {
+		return this.lazy;
+	}
+
+	/**
+	 * Reads from the channel at the given position until the buffer is full or the end of file is reached
+	 * @return the number of bytes readed
+	 */
+	private int readFully(ByteBuffer buffer, long position) throws IOException {
+		if (this.segments != null) {
+			return readFromMapping(buffer, position);
+		}
+		if (this.readAheadSize > 0 && buffer.remaining() < this.readAheadSize) {
+			return readFromWindow(getWindow(), buffer, position);
+		}
+		return readFromChannel(buffer, position);
+	}
+
+	/**
+	 * Gets the read-ahead window of the current thread, so threads scanning
+	 * different parts of the file don't wait for each other or replace the
+	 * window of the others
+	 */
+	private ReadAheadWindow getWindow() {
+		Thread thread = Thread.currentThread();
+		synchronized (this.windows) {
+			ReadAheadWindow window = this.windows.get(thread);
+			if (window == null) {
+				window = new ReadAheadWindow(this.readAheadSize);
+				this.windows.put(thread, window);
+			}
+			return window;
+		}
+	}
+
+	/**
+	 * Reads through a read-ahead window, reading the next window from the
+	 * channel when the requested bytes are not in the current one
+	 */
+	private int readFromWindow(ReadAheadWindow window, ByteBuffer buffer, long position) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			long current = position + buffer.position() - start;
+			if (current < window.start || current >= window.start + window.length) {
+				window.start = current;
+				window.length = readFromChannel(ByteBuffer.wrap(window.data), current);
+				if (window.length == 0) {
+					break;
+				}
+			}
+			int offset = (int) (current - window.start);
+			int count = Math.min(buffer.remaining(), window.length - offset);
+			buffer.put(window.data, offset, count);
+		}
+		return buffer.position() - start;
+	}
+
+	private int readFromMapping(ByteBuffer buffer, long position) {
+		int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			long current = position + buffer.position() - start;
+			if (current >= this.fileSize) {
+				break;
+			}
+			int segmentIndex = (int) (current / this.segmentSize);
+			ByteBuffer segment = getSegment(segmentIndex).duplicate();
+			segment.position((int) (current - segmentIndex * this.segmentSize));
+			if (segment.remaining() > buffer.remaining()) {
+				segment.limit(segment.position() + buffer.remaining());
+			}
+			buffer.put(segment);
+		}
+		return buffer.position() - start;
+	}
+
+	/**
+	 * Gets a segment of the file, mapping it the first time it is used
+	 */
+	private synchronized MappedByteBuffer getSegment(int segmentIndex) {
+		if (!this.channel.isOpen()) {
+			throw new DBFException("Memo file " + this.memoFile.getName() + " is closed");
+		}
+		MappedByteBuffer segment = this.segments[segmentIndex];
+		if (segment == null) {
+			long position = segmentIndex * this.segmentSize;
+			try {
+				segment = this.channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(this.segmentSize, this.fileSize - position));
+			}
+			catch (IOException e) {
+				throw new DBFException(e.getMessage(), e);
+			}
+			this.segments[segmentIndex] = segment;
+		}
+		return segment;
+	}
+
+	private int readFromChannel(ByteBuffer buffer, long position) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			int count = this.channel.read(buffer, position + buffer.position() - start);
+			if (count < 0) {
+				break;
+			}
+		}
+		return buffer.position() - start;
+	}
+
 	private boolean isMagicDBase4(byte[] blockData) {
 		return blockData[0] == (byte) 0xFF && blockData[1] == (byte) 0xFF && blockData[2] == 0x08 && blockData[3] == 0x00;
 	}
+
+	@Override
+	public synchronized void close() {
+		DBFUtils.close(this.channel);
+		synchronized (this.windows) {
+			this.windows.clear();
+		}
+		if (this.segments != null) {
+			// mappings are released when the slices are no longer referenced
+			Arrays.fill(this.segments, null);
+		}
+	}
+
+	/**
+	 * Bytes read ahead by one thread
+	 */
+	private static final class ReadAheadWindow {
+		final byte[] data;
+		long start = 0;
+		int length = 0;
+
+		ReadAheadWindow(int size) {
+			this.data = new byte[size];
+		}
+	}
+
+	/**
+	 * Position, length and type of a value in the memo file
+	 */
+	static final class MemoItem {
+		final long position;
+		final int length;
+		final DBFDataType type;
+
+		MemoItem(long position, int length, DBFDataType type) {
+			this.position = position;
+			this.length = length;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * InputStream over a range of the file, using positional reads
+	 */
+	private class MemoInputStream extends InputStream {
+		private long position;
+		private final long end;
+
+		MemoInputStream(long position, long end) {
+			this.position = position;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int count = (int) Math.min(len, this.end - this.position);
+			if (count <= 0) {
+				return -1;
+			}
+			int readed = readFully(ByteBuffer.wrap(b, off, count), this.position);
+			if (readed == 0) {
+				throw new EOFException("Unexpected end of file");
+			}
+			this.position += readed;
+			return readed;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = Math.max(0, Math.min(n, this.end - this.position));
+			this.position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, this.end - this.position);
+		}
+	}
 }
@@ -0,0 +1,116 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+/**
+ * Options used to read memo files (DBT and FPT).
+ *
+ * @see DBFReader#setMemoFile(java.io.File, DBFMemoOptions)
+ */
+public class DBFMemoOptions {
+
+	private long cacheSize = 0;
+	private boolean lazy = false;
+	private int readAheadSize = 0;
+	private boolean memoryMapped = false;
+
+	/**
+	 * Gets the size of the cache of memo values
+	 * @return the size of the cache in bytes, 0 if there is no cache
+	 */
+	public long getCacheSize() {
+		return this.cacheSize;
+	}
+
+	/**
+	 * Sets the size of the cache of memo values (default 0, no cache).
+	 * Values read from the memo file are kept in memory up to this size,
+	 * evicting the least recently used ones.
+	 * @param cacheSize the size of the cache in bytes, 0 to disable it
+	 */
+	public void setCacheSize(long cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative");
+		}
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Determine if memo values are read on demand (default false)
+	 * @return true if memo values are returned as DBFMemoReference
+	 */
+	public boolean isLazy() {
+		return this.lazy;
+	}
+
+	/**
+	 * Determine if memo values are read on demand. If true, memo fields (M,
+	 * B, G, P and W) are returned as {@link DBFMemoReference} instead of String
+	 * or byte[], and the memo file is only read when the value is requested.
+	 * @param lazy true to return memo values as DBFMemoReference
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Gets the size of the read-ahead window
+	 * @return the size of the window in bytes, 0 if disabled
+	 */
+	public int getReadAheadSize() {
+		return this.readAheadSize;
+	}
+
+	/**
+	 * Sets the size of the read-ahead window (default 0, disabled).
+	 * The memo file is read in windows of this size and values are served
+	 * from the current window while possible, so when memo values are read
+	 * in file order, as in a full scan, the file is read with a few large
+	 * sequential reads instead of several small reads per value. Values
+	 * bigger than the window are read directly. Each thread reading the memo
+	 * file, as in a parallel scan, has its own window.
+	 * @param readAheadSize the size of the window in bytes, 0 to disable it
+	 */
+	public void setReadAheadSize(int readAheadSize) {
+		if (readAheadSize < 0) {
+			throw new IllegalArgumentException("Read-ahead size cannot be negative");
+		}
+		this.readAheadSize = readAheadSize;
+	}
+
+	/**
+	 * Determine if the memo file is memory mapped (default false)
+	 * @return true if the memo file is memory mapped
+	 */
+	public boolean isMemoryMapped() {
+		return this.memoryMapped;
+	}
+
+	/**
+	 * Determine if the memo file is memory mapped (default false).
+	 * Values are copied from the mapping instead of read from the file, and
+	 * {@link DBFMemoReference#getByteBuffer()} returns slices of the mapping
+	 * without copying the values. Files bigger than 2GB are mapped in
+	 * segments. The read-ahead window is not used with mapped files.
+	 * @param memoryMapped true to map the memo file
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reference to a value stored in a memo file (DBT or FPT).
+ * <p>
+ * Returned by {@link DBFReader} for memo fields when the memo file is read
+ * lazily (see {@link DBFMemoOptions#setLazy(boolean)}). It only holds the
+ * block number of the value, the memo file is read when the value is
+ * requested, so rows with big BLOB, GENERAL or PICTURE values can be read
+ * without loading them. Values can be streamed with {@link #getInputStream()}.
+ * </p>
+ * <p>
+ * The memo file must be open (the reader not closed) to read the value.
+ * </p>
+ */
+public class DBFMemoReference {
+
+	private final DBFMemoFile memoFile;
+	private final int block;
+	private final DBFDataType type;
+	private DBFMemoFile.MemoItem item = null;
+
+	DBFMemoReference(DBFMemoFile memoFile, int block, DBFDataType type) {
+		this.memoFile = memoFile;
+		this.block = block;
+		this.type = type;
+	}
+
+	/**
+	 * Gets the first block of the value in the memo file
+	 * @return the block number
+	 */
+	public int getBlock() {
+		return this.block;
+	}
+
+	/**
+	 * Gets the type of the value. For FPT files is the type stored with the
+	 * value (MEMO, BINARY or PICTURE), otherwise the type of the field.
+	 * @return the type of the value
+	 */
+	public DBFDataType getType() {
+		return locate().type;
+	}
+
+	/**
+	 * Gets the length of the value in bytes
+	 * @return the length of the value
+	 */
+	public int getLength() {
+		return locate().length;
+	}
+
+	/**
+	 * Reads the value as String. Binary values are converted using the
+	 * charset of the reader.
+	 * @return the value
+	 */
+	public String getString() {
+		Object value = this.memoFile.readData(this.block, this.type);
+		if (value instanceof byte[]) {
+			return new String((byte[]) value, this.memoFile.getCharset());
+		}
+		return (String) value;
+	}
+
+	/**
+	 * Reads the raw bytes of the value
+	 * @return the value
+	 */
+	public byte[] getBytes() {
+		return this.memoFile.readBytes(locate());
+	}
+
+	/**
+	 * Gets the value as a read only ByteBuffer. If the memo file is memory
+	 * mapped (see {@link DBFMemoOptions#setMemoryMapped(boolean)}) the buffer
+	 * is a slice of the mapping and the value is not copied; the slice remains
+	 * valid after the reader is closed.
+	 * @return the value
+	 */
+	public ByteBuffer getByteBuffer() {
+		return this.memoFile.readBuffer(locate());
+	}
+
+	/**
+	 * Opens a stream that reads the value directly from the memo file, without
+	 * loading it in memory. Several streams can be open at the same time.
+	 * @return the stream
+	 */
+	public InputStream getInputStream() {
+		return this.memoFile.openStream(locate());
+	}
+
+	private DBFMemoFile.MemoItem locate() {
+		if (this.item == null) {
+			this.item = this.memoFile.locate(this.block, this.type);
+		}
+		return this.item;
+	}
+
+	@Override
+	public String toString() {
+		return "DBFMemoReference[block=" + this.block + ", type=" + this.type + "]";
+	}
+}
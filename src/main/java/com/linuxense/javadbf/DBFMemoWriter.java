@@ -0,0 +1,325 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes values to a memo file (DBT or FPT), appending them at the end of the
+ * file.
+ * <p>
+ * Values are written in blocks, to a buffer that is written to the file when
+ * it is full, so several values are written with one large write. Values read
+ * from an InputStream are streamed through the buffer. The header of the file
+ * (next free block and block size) is only written when the file is created,
+ * on {@link #checkpoint()} (called by {@link DBFWriter#flush()}) and on
+ * {@link #close()}.
+ * </p>
+ * <p>
+ * DBT files are written with the dBase IV layout (each value starts with
+ * FF FF 08 00 and its length), so binary values can be stored. FPT files
+ * store the type and length of each value.
+ * </p>
+ */
+class DBFMemoWriter implements Closeable {
+
+	private static final int FILE_HEADER_SIZE = 512;
+	private static final int DBT_BLOCK_SIZE = 512;
+	private static final int FPT_BLOCK_SIZE = 64;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int FPT_PICTURE = 0;
+	private static final int FPT_TEXT = 1;
+	private static final int FPT_BINARY = 2;
+
+	private final File memoFile;
+	private final Charset charset;
+	private final boolean fpt;
+	private final FileChannel channel;
+	private int blockSize;
+	private ByteBuffer buffer;
+	/** position in the file of the first byte of the buffer */
+	private long bufferStart;
+
+	DBFMemoWriter(File memoFile, Charset charset) {
+		this.memoFile = memoFile;
+		this.charset = charset;
+		this.fpt = isFPTFile(memoFile);
+		try {
+			this.channel = new RandomAccessFile(memoFile, "rw").getChannel();
+		}
+		catch (FileNotFoundException e) {
+			throw new DBFException("Cannot open memo file " + memoFile.getName() + ": " + e.getMessage(), e);
+		}
+		try {
+			int nextBlock;
+			if (this.channel.size() == 0) {
+				this.blockSize = this.fpt ? FPT_BLOCK_SIZE : DBT_BLOCK_SIZE;
+				nextBlock = FILE_HEADER_SIZE / this.blockSize;
+				writeFully(ByteBuffer.allocate(FILE_HEADER_SIZE), 0);
+				writeHeader(nextBlock);
+			}
+			else {
+				nextBlock = readHeader();
+			}
+			// a whole number of blocks, so the buffer is written at block boundaries
+			this.buffer = ByteBuffer.allocate(Math.max(1, BUFFER_SIZE / this.blockSize) * this.blockSize);
+			this.bufferStart = nextBlock * (long) this.blockSize;
+		}
+		catch (IOException e) {
+			DBFUtils.close(this.channel);
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Checks if a memo file is a FoxPro memo file, by its extension
+	 * @param memoFile the memo file
+	 * @return true for FPT files, false for DBT files
+	 */
+	static boolean isFPTFile(File memoFile) {
+		return memoFile.getName().toLowerCase().endsWith(".fpt");
+	}
+
+	/**
+	 * Checks if the memo file is a FoxPro memo file
+	 * @return true for FPT files, false for DBT files
+	 */
+	boolean isFPT() {
+		return this.fpt;
+	}
+
+	/**
+	 * Appends a value to the memo file
+	 * @param type type of the field
+	 * @param value the value, as String, byte[] or InputStream. The stream is
+	 *        read until its end but not closed.
+	 * @return the first block of the value
+	 */
+	int write(DBFDataType type, Object value) {
+		int fptType = FPT_BINARY;
+		if (type == DBFDataType.MEMO) {
+			fptType = FPT_TEXT;
+		}
+		else if (type == DBFDataType.PICTURE) {
+			fptType = FPT_PICTURE;
+		}
+		try {
+			if (value instanceof InputStream) {
+				return writeStream(fptType, (InputStream) value);
+			}
+			byte[] data;
+			if (value instanceof String) {
+				data = ((String) value).getBytes(this.charset);
+			}
+			else {
+				data = (byte[]) value;
+			}
+			int block = getNextBlock();
+			put(valueHeader(fptType, data.length), 0, 8);
+			put(data, 0, data.length);
+			padToBlock();
+			return block;
+		}
+		catch (IOException e) {
+			throw new DBFException("Error writing memo file " + this.memoFile.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	private int writeStream(int fptType, InputStream in) throws IOException {
+		int block = getNextBlock();
+		long headerPosition = getPosition();
+		try {
+			put(valueHeader(fptType, 0), 0, 8);
+			long length = 0;
+			int readed;
+			while ((readed = in.read(this.buffer.array(), this.buffer.position(), this.buffer.remaining())) != -1) {
+				this.buffer.position(this.buffer.position() + readed);
+				length += readed;
+				// checked while reading, the length is stored in an int
+				if (length > Integer.MAX_VALUE - 8) {
+					throw new DBFException("Memo value too big: more than " + (Integer.MAX_VALUE - 8) + " bytes");
+				}
+				if (!this.buffer.hasRemaining()) {
+					flush();
+				}
+			}
+			padToBlock();
+			writeAt(valueHeader(fptType, (int) length), headerPosition);
+			return block;
+		}
+		catch (IOException | RuntimeException e) {
+			truncate(headerPosition);
+			throw e;
+		}
+	}
+
+	/**
+	 * Discards the bytes appended after a position, in the buffer or in the
+	 * file, so a value not completely written doesn't leave a partial block
+	 */
+	private void truncate(long position) throws IOException {
+		if (position >= this.bufferStart) {
+			this.buffer.position((int) (position - this.bufferStart));
+		}
+		else {
+			this.buffer.clear();
+			this.channel.truncate(position);
+			this.bufferStart = position;
+		}
+	}
+
+	private byte[] valueHeader(int fptType, int length) {
+		ByteBuffer header = ByteBuffer.allocate(8);
+		if (this.fpt) {
+			header.putInt(fptType);
+			header.putInt(length);
+		}
+		else {
+			header.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0x08).put((byte) 0x00);
+			header.putInt(Integer.reverseBytes(length + 8));
+		}
+		return header.array();
+	}
+
+	private void put(byte[] data, int offset, int length) throws IOException {
+		while (length > 0) {
+			int count = Math.min(length, this.buffer.remaining());
+			this.buffer.put(data, offset, count);
+			offset += count;
+			length -= count;
+			if (!this.buffer.hasRemaining()) {
+				flush();
+			}
+		}
+	}
+
+	private void padToBlock() throws IOException {
+		int padding = (int) ((this.blockSize - getPosition() % this.blockSize) % this.blockSize);
+		put(new byte[padding], 0, padding);
+	}
+
+	/**
+	 * Writes bytes already appended, in the buffer or in the file
+	 */
+	private void writeAt(byte[] data, long position) throws IOException {
+		int inFile = (int) Math.max(0, Math.min(data.length, this.bufferStart - position));
+		if (inFile > 0) {
+			writeFully(ByteBuffer.wrap(data, 0, inFile), position);
+		}
+		for (int i = inFile; i < data.length; i++) {
+			this.buffer.put((int) (position + i - this.bufferStart), data[i]);
+		}
+	}
+
+	private long getPosition() {
+		return this.bufferStart + this.buffer.position();
+	}
+
+	private int getNextBlock() {
+		long block = getPosition() / this.blockSize;
+		if (block > Integer.MAX_VALUE) {
+			throw new DBFException("Memo file " + this.memoFile.getName() + " is full");
+		}
+		return (int) block;
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		writeFully(this.buffer, this.bufferStart);
+		this.bufferStart += this.buffer.limit();
+		this.buffer.clear();
+	}
+
+	private void writeFully(ByteBuffer data, long position) throws IOException {
+		int start = data.position();
+		while (data.hasRemaining()) {
+			this.channel.write(data, position + data.position() - start);
+		}
+	}
+
+	private int readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(24);
+		while (header.hasRemaining() && this.channel.read(header, header.position()) >= 0) {
+			// read the header
+		}
+		if (this.fpt) {
+			this.blockSize = header.getShort(6) & 0xFFFF;
+			if (this.blockSize == 0) {
+				this.blockSize = FPT_BLOCK_SIZE;
+			}
+			return header.getInt(0);
+		}
+		this.blockSize = Short.reverseBytes(header.getShort(20)) & 0xFFFF;
+		if (this.blockSize == 0) {
+			this.blockSize = DBT_BLOCK_SIZE;
+		}
+		return Integer.reverseBytes(header.getInt(0));
+	}
+
+	private void writeHeader(int nextBlock) throws IOException {
+		if (this.fpt) {
+			ByteBuffer header = ByteBuffer.allocate(8);
+			header.putInt(0, nextBlock);
+			header.putShort(6, (short) this.blockSize);
+			writeFully(header, 0);
+		}
+		else {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			header.putInt(0, Integer.reverseBytes(nextBlock));
+			writeFully(header, 0);
+			header = ByteBuffer.allocate(2);
+			header.putShort(0, Short.reverseBytes((short) this.blockSize));
+			writeFully(header, 20);
+		}
+	}
+
+	/**
+	 * Writes the buffered values and updates the header of the file
+	 */
+	void checkpoint() {
+		try {
+			flush();
+			writeHeader(getNextBlock());
+		}
+		catch (IOException e) {
+			throw new DBFException("Error writing memo file " + this.memoFile.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!this.channel.isOpen()) {
+			return;
+		}
+		try {
+			checkpoint();
+		}
+		finally {
+			DBFUtils.close(this.channel);
+		}
+	}
+}
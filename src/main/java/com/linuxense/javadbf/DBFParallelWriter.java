@@ -0,0 +1,388 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Adds records to a {@link DBFWriter} from several threads, encoding them in
+ * a pool of threads.
+ * <p>
+ * Records are grouped in batches that are encoded by the threads of the pool,
+ * each one with its own encoder, and written to the DBFWriter one batch at a
+ * time. By default batches are written in the order the records were added;
+ * in unordered mode each batch is written as soon as it is encoded. The
+ * number of batches not yet written is bounded, so adding records blocks if
+ * the pool can not keep up.
+ * </p>
+ * <p>
+ * The DBFWriter must write to a file or to a stream in streaming mode, its
+ * fields must be set and it can not have memo or autoincrement fields. It
+ * must not be used directly while used by a DBFParallelWriter. Closing the
+ * DBFParallelWriter waits for all the records to be written and closes the
+ * DBFWriter.
+ * </p>
+ * <p>
+ * Methods of this class can be called from several threads.
+ * </p>
+ */
+public class DBFParallelWriter implements Closeable {
+
+	private static final int DEFAULT_BATCH_SIZE = 256;
+
+	private final DBFWriter writer;
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final int maxPendingBatches;
+	private final Semaphore pendingBatches;
+	private final Queue<DBFRecordEncoder> encoders = new ConcurrentLinkedQueue<DBFRecordEncoder>();
+	private final int recordLength;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private boolean ordered = true;
+	private boolean started = false;
+	private boolean closed = false;
+
+	private List<Object[]> batch = null;
+	private long nextBatch = 0;
+
+	private final Object sequencer = new Object();
+	private final Map<Long, byte[]> encodedBatches = new HashMap<Long, byte[]>();
+	private final Map<Long, Integer> encodedCounts = new HashMap<Long, Integer>();
+	private long nextWrite = 0;
+	private volatile RuntimeException failure = null;
+
+	/**
+	 * Creates a DBFParallelWriter with a pool of threads, that is shutdown on
+	 * close.
+	 * @param writer the writer, with fields already set
+	 * @param threads the number of threads used to encode records
+	 */
+	public DBFParallelWriter(DBFWriter writer, int threads) {
+		this(writer, Executors.newFixedThreadPool(threads), true, threads);
+	}
+
+	/**
+	 * Creates a DBFParallelWriter that encodes records with the given
+	 * executor, which is not shutdown on close.
+	 * @param writer the writer, with fields already set
+	 * @param executor the executor used to encode records
+	 */
+	public DBFParallelWriter(DBFWriter writer, ExecutorService executor) {
+		this(writer, executor, false, Runtime.getRuntime().availableProcessors());
+	}
+
+	private DBFParallelWriter(DBFWriter writer, ExecutorService executor, boolean ownExecutor, int threads) {
+		try {
+			writer.checkEncodedRecordsSupported();
+		}
+		catch (RuntimeException e) {
+			if (ownExecutor) {
+				executor.shutdown();
+			}
+			throw e;
+		}
+		this.writer = writer;
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+		this.maxPendingBatches = Math.max(2, threads * 4);
+		this.pendingBatches = new Semaphore(this.maxPendingBatches);
+		this.recordLength = writer.getRecordLength();
+	}
+
+	/**
+	 * Gets the number of records encoded together
+	 * @return the batch size
+	 */
+	public synchronized int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Sets the number of records encoded together (default 256). It can only
+	 * be set before adding records.
+	 * @param batchSize the number of records
+	 */
+	public synchronized void setBatchSize(int batchSize) {
+		checkNotStarted();
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Determine if records are written in the order they are added
+	 * @return true if records are written in order
+	 */
+	public synchronized boolean isOrdered() {
+		return this.ordered;
+	}
+
+	/**
+	 * Determine if records are written in the order they are added (default
+	 * true). If false, each batch of records is written as soon as it is
+	 * encoded. It can only be set before adding records.
+	 * @param ordered false to write records in any order
+	 */
+	public synchronized void setOrdered(boolean ordered) {
+		checkNotStarted();
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Adds a record. The values are checked in the calling thread, and
+	 * encoded and written later.
+	 * @param values fields of the record
+	 */
+	public void addRecord(Object[] values) {
+		checkFailure();
+		this.writer.checkRecord(values);
+		// values can be reused by the caller once added
+		Object[] record = values.clone();
+		List<Object[]> full = null;
+		long sequence = 0;
+		synchronized (this) {
+			if (this.closed) {
+				throw new IllegalStateException("You can add records a closed DBFParallelWriter");
+			}
+			this.started = true;
+			if (this.batch == null) {
+				this.batch = new ArrayList<Object[]>(this.batchSize);
+			}
+			this.batch.add(record);
+			if (this.batch.size() >= this.batchSize) {
+				// keep the order of the batches when waiting for the pool
+				try {
+					acquirePermit();
+				}
+				catch (DBFException e) {
+					// the record is not added, and the batch is submitted by the next call
+					this.batch.remove(this.batch.size() - 1);
+					if (this.batch.isEmpty()) {
+						this.batch = null;
+					}
+					throw e;
+				}
+				// the sequence is only taken when the batch is sure to be submitted
+				full = this.batch;
+				sequence = this.nextBatch++;
+				this.batch = null;
+			}
+		}
+		if (full != null) {
+			submit(full, sequence);
+		}
+	}
+
+	/**
+	 * Adds several records, as {@link #addRecord(Object[])}
+	 * @param records the records to add
+	 */
+	public void addRecords(List<Object[]> records) {
+		for (Object[] values : records) {
+			addRecord(values);
+		}
+	}
+
+	/**
+	 * Waits until all the records added are written to the DBFWriter, and
+	 * flushes it.
+	 */
+	public void flush() {
+		List<Object[]> partial;
+		long sequence = 0;
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			partial = this.batch;
+			if (partial != null) {
+				acquirePermit();
+				sequence = this.nextBatch++;
+				this.batch = null;
+			}
+		}
+		if (partial != null) {
+			submit(partial, sequence);
+		}
+		awaitWritten();
+		checkFailure();
+		synchronized (this.sequencer) {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * Waits until all the records added are written and closes the
+	 * DBFWriter, updating the header.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+		}
+		try {
+			flush();
+		}
+		finally {
+			synchronized (this) {
+				this.closed = true;
+			}
+			if (this.ownExecutor) {
+				this.executor.shutdown();
+			}
+			this.writer.close();
+		}
+	}
+
+	private void checkNotStarted() {
+		if (this.started) {
+			throw new IllegalStateException("Records have already been added");
+		}
+	}
+
+	private void checkFailure() {
+		RuntimeException e = this.failure;
+		if (e != null) {
+			throw new DBFException("Error writing records: " + e.getMessage(), e);
+		}
+	}
+
+	private void acquirePermit() {
+		try {
+			this.pendingBatches.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DBFException("Interrupted while waiting to add records", e);
+		}
+	}
+
+	private void awaitWritten() {
+		try {
+			this.pendingBatches.acquire(this.maxPendingBatches);
+			this.pendingBatches.release(this.maxPendingBatches);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DBFException("Interrupted while waiting for records to be written", e);
+		}
+	}
+
+	private void submit(final List<Object[]> records, final long sequence) {
+		try {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					encode(records, sequence);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			fail(sequence, new DBFException("Records rejected by the executor", e));
+			throw this.failure;
+		}
+	}
+
+	private void encode(List<Object[]> records, long sequence) {
+		byte[] encoded;
+		try {
+			// encoders are pooled by this writer, not kept by the threads of the executor
+			DBFRecordEncoder encoder = this.encoders.poll();
+			if (encoder == null) {
+				encoder = this.writer.newEncoder();
+			}
+			encoded = new byte[records.size() * this.recordLength];
+			int offset = 0;
+			for (Object[] values : records) {
+				System.arraycopy(encoder.encode(values), 0, encoded, offset, this.recordLength);
+				offset += this.recordLength;
+			}
+			this.encoders.offer(encoder);
+		}
+		catch (RuntimeException e) {
+			fail(sequence, e);
+			return;
+		}
+		write(encoded, records.size(), sequence);
+	}
+
+	/**
+	 * Writes an encoded batch, and the following ones already encoded if
+	 * writing in order
+	 */
+	private void write(byte[] encoded, int count, long sequence) {
+		synchronized (this.sequencer) {
+			if (!this.ordered) {
+				writeBatch(encoded, count);
+				return;
+			}
+			this.encodedBatches.put(sequence, encoded);
+			this.encodedCounts.put(sequence, count);
+			while (this.encodedBatches.containsKey(this.nextWrite)) {
+				long next = this.nextWrite++;
+				writeBatch(this.encodedBatches.remove(next), this.encodedCounts.remove(next));
+			}
+		}
+	}
+
+	private void writeBatch(byte[] encoded, int count) {
+		try {
+			if (encoded != null && this.failure == null) {
+				this.writer.writeEncodedRecords(encoded, count);
+			}
+		}
+		catch (IOException e) {
+			this.failure = new DBFException(e.getMessage(), e);
+		}
+		catch (RuntimeException e) {
+			this.failure = e;
+		}
+		finally {
+			this.pendingBatches.release();
+		}
+	}
+
+	/**
+	 * Records a failure, skipping the batch so the following ones are not
+	 * kept waiting
+	 */
+	private void fail(long sequence, RuntimeException e) {
+		synchronized (this.sequencer) {
+			if (this.failure == null) {
+				this.failure = e;
+			}
+		}
+		write(null, 0, sequence);
+	}
+}
@@ -0,0 +1,635 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Condition over the fields of a record, used to filter the records returned
+ * by a {@link DBFReader} (see {@link DBFReader#setFilter(DBFPredicate)}).
+ * <p>
+ * Predicates are evaluated against the raw bytes of the record, so records
+ * that doesn't match are skipped without decoding them. Character, date,
+ * numeric, logical and integer fields are compared directly in their stored
+ * form; other types are decoded to compare them, binary values as unsigned
+ * bytes.
+ * </p>
+ * <p>
+ * Comparisons follow SQL semantics: a null field doesn't match equal, between
+ * or startsWith, use {@link #isNull(String)} to check it. Character fields are
+ * compared byte by byte in the charset of the file, ignoring trailing spaces.
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * reader.setFilter(DBFPredicate.and(
+ *     DBFPredicate.equal("UF", "SP"),
+ *     DBFPredicate.between("DATE", "20230101", null)));
+ * </pre>
+ */
+public abstract class DBFPredicate {
+
+	/**
+	 * Compiled form of a predicate, bound to the fields of a reader.
+	 */
+	interface Matcher {
+		boolean matches(byte[] data, int recordOffset);
+	}
+
+	DBFPredicate() {
+		super();
+	}
+
+	abstract Matcher compile(DBFReader reader);
+
+	/**
+	 * Matches records where the field is equal to the value
+	 * @param fieldName name of the field (case insensitive)
+	 * @param value the value, of the same type returned by DBFReader for the
+	 *        field. Numbers can be used for any numeric type, and dates can also
+	 *        be given as yyyyMMdd strings.
+	 * @return the predicate
+	 */
+	public static DBFPredicate equal(String fieldName, Object value) {
+		Objects.requireNonNull(value, "value cannot be null, use isNull");
+		return new FieldPredicate(fieldName, FieldPredicate.EQUAL, value, null);
+	}
+
+	/**
+	 * Matches records where the field is between two values, both inclusive
+	 * @param fieldName name of the field (case insensitive)
+	 * @param from the lower bound, or null if there is no lower bound
+	 * @param to the upper bound, or null if there is no upper bound
+	 * @return the predicate
+	 */
+	public static DBFPredicate between(String fieldName, Object from, Object to) {
+		return new FieldPredicate(fieldName, FieldPredicate.BETWEEN, from, to);
+	}
+
+	/**
+	 * Matches records where the text of the field starts with the prefix
+	 * @param fieldName name of the field (case insensitive)
+	 * @param prefix the prefix
+	 * @return the predicate
+	 */
+	public static DBFPredicate startsWith(String fieldName, String prefix) {
+		Objects.requireNonNull(prefix, "prefix cannot be null");
+		return new FieldPredicate(fieldName, FieldPredicate.STARTS_WITH, prefix, null);
+	}
+
+	/**
+	 * Matches records where the field is null
+	 * @param fieldName name of the field (case insensitive)
+	 * @return the predicate
+	 */
+	public static DBFPredicate isNull(String fieldName) {
+		return new FieldPredicate(fieldName, FieldPredicate.IS_NULL, null, null);
+	}
+
+	/**
+	 * Matches records marked as deleted. Only useful if deleted rows are shown.
+	 * @return the predicate
+	 */
+	public static DBFPredicate deleted() {
+		return new DBFPredicate() {
+			@Override
+			Matcher compile(DBFReader reader) {
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return data[recordOffset] == '*';
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Matches records that match all the predicates
+	 * @param predicates the predicates
+	 * @return the predicate
+	 */
+	public static DBFPredicate and(DBFPredicate... predicates) {
+		return new LogicalPredicate(true, predicates);
+	}
+
+	/**
+	 * Matches records that match any of the predicates
+	 * @param predicates the predicates
+	 * @return the predicate
+	 */
+	public static DBFPredicate or(DBFPredicate... predicates) {
+		return new LogicalPredicate(false, predicates);
+	}
+
+	/**
+	 * Matches records that doesn't match the predicate
+	 * @param predicate the predicate
+	 * @return the predicate
+	 */
+	public static DBFPredicate not(final DBFPredicate predicate) {
+		Objects.requireNonNull(predicate);
+		return new DBFPredicate() {
+			@Override
+			Matcher compile(DBFReader reader) {
+				final Matcher matcher = predicate.compile(reader);
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return !matcher.matches(data, recordOffset);
+					}
+				};
+			}
+		};
+	}
+
+	private static class LogicalPredicate extends DBFPredicate {
+		private final boolean and;
+		private final DBFPredicate[] predicates;
+
+		LogicalPredicate(boolean and, DBFPredicate[] predicates) {
+			this.and = and;
+			this.predicates = predicates.clone();
+			for (DBFPredicate predicate : this.predicates) {
+				Objects.requireNonNull(predicate);
+			}
+		}
+
+		@Override
+		Matcher compile(DBFReader reader) {
+			final Matcher[] matchers = new Matcher[this.predicates.length];
+			for (int i = 0; i < matchers.length; i++) {
+				matchers[i] = this.predicates[i].compile(reader);
+			}
+			return new Matcher() {
+				@Override
+				public boolean matches(byte[] data, int recordOffset) {
+					for (Matcher matcher : matchers) {
+						if (matcher.matches(data, recordOffset) != and) {
+							return !and;
+						}
+					}
+					return and;
+				}
+			};
+		}
+	}
+
+	private static class FieldPredicate extends DBFPredicate {
+		static final int EQUAL = 0;
+		static final int BETWEEN = 1;
+		static final int STARTS_WITH = 2;
+		static final int IS_NULL = 3;
+
+		private final String fieldName;
+		private final int operation;
+		private final Object value1;
+		private final Object value2;
+
+		FieldPredicate(String fieldName, int operation, Object value1, Object value2) {
+			this.fieldName = Objects.requireNonNull(fieldName);
+			this.operation = operation;
+			this.value1 = value1;
+			this.value2 = value2;
+		}
+
+		@Override
+		Matcher compile(DBFReader reader) {
+			int fieldIndex = reader.getFieldIndex(this.fieldName);
+			final FieldValue fieldValue = createFieldValue(reader, fieldIndex);
+			switch (this.operation) {
+			case EQUAL:
+				final Object target = fieldValue.convert(this.value1);
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return !fieldValue.isNull(data, recordOffset) && fieldValue.compareTo(data, recordOffset, target) == 0;
+					}
+				};
+			case BETWEEN:
+				final Object from = this.value1 != null ? fieldValue.convertBound(this.value1, RoundingMode.CEILING) : null;
+				final Object to = this.value2 != null ? fieldValue.convertBound(this.value2, RoundingMode.FLOOR) : null;
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return !fieldValue.isNull(data, recordOffset)
+							&& (from == null || fieldValue.compareTo(data, recordOffset, from) >= 0)
+							&& (to == null || fieldValue.compareTo(data, recordOffset, to) <= 0);
+					}
+				};
+			case STARTS_WITH:
+				final Object prefix = fieldValue.convertPrefix((String) this.value1);
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return !fieldValue.isNull(data, recordOffset) && fieldValue.startsWith(data, recordOffset, prefix);
+					}
+				};
+			case IS_NULL:
+			default:
+				return new Matcher() {
+					@Override
+					public boolean matches(byte[] data, int recordOffset) {
+						return fieldValue.isNull(data, recordOffset);
+					}
+				};
+			}
+		}
+
+		private static FieldValue createFieldValue(DBFReader reader, int fieldIndex) {
+			DBFRecordLayout layout = reader.getLayout();
+			if (layout.hasVariableLength(fieldIndex)) {
+				return new DecodedFieldValue(reader, fieldIndex);
+			}
+			switch (layout.getField(fieldIndex).getType()) {
+			case CHARACTER:
+				return new CharacterFieldValue(reader, fieldIndex);
+			case DATE:
+				return new DateFieldValue(reader, fieldIndex);
+			case NUMERIC:
+			case FLOATING_POINT:
+				return new NumericFieldValue(reader, fieldIndex);
+			case LOGICAL:
+				return new LogicalFieldValue(reader, fieldIndex);
+			case LONG:
+			case AUTOINCREMENT:
+				return new IntegerFieldValue(reader, fieldIndex);
+			default:
+				return new DecodedFieldValue(reader, fieldIndex);
+			}
+		}
+	}
+
+	/**
+	 * Access to the value of a field in the record, without decoding it if possible
+	 */
+	private abstract static class FieldValue {
+		protected final DBFReader reader;
+		protected final DBFRecordLayout layout;
+		protected final int fieldIndex;
+		protected final int offset;
+		protected final int length;
+
+		FieldValue(DBFReader reader, int fieldIndex) {
+			this.reader = reader;
+			this.layout = reader.getLayout();
+			this.fieldIndex = fieldIndex;
+			this.offset = this.layout.getOffset(fieldIndex);
+			this.length = this.layout.getField(fieldIndex).getLength();
+		}
+
+		boolean isNull(byte[] data, int recordOffset) {
+			return this.layout.isNull(this.fieldIndex, data, recordOffset);
+		}
+
+		/** converts the value given by the user to the form used by compareTo */
+		abstract Object convert(Object value);
+
+		/**
+		 * converts a between bound, fields that can only hold some values round it
+		 * to the nearest one inside the range with the given mode
+		 */
+		Object convertBound(Object value, RoundingMode mode) {
+			return convert(value);
+		}
+
+		abstract int compareTo(byte[] data, int recordOffset, Object target);
+
+		Object convertPrefix(String prefix) {
+			return prefix;
+		}
+
+		boolean startsWith(byte[] data, int recordOffset, Object prefix) {
+			Object value = this.reader.decodeColumn(this.fieldIndex, data, recordOffset);
+			return value != null && value.toString().startsWith((String) prefix);
+		}
+
+		protected BigDecimal toBigDecimal(Object value) {
+			if (value instanceof BigDecimal) {
+				return (BigDecimal) value;
+			}
+			if (value instanceof Double || value instanceof Float) {
+				double d = ((Number) value).doubleValue();
+				if (Double.isNaN(d) || Double.isInfinite(d)) {
+					throw invalidValue(value);
+				}
+			}
+			if (value instanceof Number) {
+				return new BigDecimal(value.toString());
+			}
+			throw invalidValue(value);
+		}
+
+		protected DBFException invalidValue(Object value) {
+			return new DBFException("Invalid value for field " + this.layout.getField(this.fieldIndex).getName() + ": " + value);
+		}
+	}
+
+	private static class CharacterFieldValue extends FieldValue {
+		private final Charset charset;
+
+		CharacterFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+			this.charset = reader.getCharset();
+		}
+
+		@Override
+		Object convert(Object value) {
+			byte[] bytes = value.toString().getBytes(this.charset);
+			return Arrays.copyOf(bytes, DBFUtils.rightTrimmedLength(bytes, 0, bytes.length));
+		}
+
+		@Override
+		Object convertPrefix(String prefix) {
+			return prefix.getBytes(this.charset);
+		}
+
+		@Override
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			byte[] bytes = (byte[]) target;
+			int start = recordOffset + this.offset;
+			int valueLength = DBFUtils.rightTrimmedLength(data, start, this.length);
+			int n = Math.min(valueLength, bytes.length);
+			for (int i = 0; i < n; i++) {
+				int c = (data[start + i] & 0xFF) - (bytes[i] & 0xFF);
+				if (c != 0) {
+					return c;
+				}
+			}
+			return valueLength - bytes.length;
+		}
+
+		@Override
+		boolean startsWith(byte[] data, int recordOffset, Object prefix) {
+			byte[] bytes = (byte[]) prefix;
+			if (bytes.length > this.length) {
+				return false;
+			}
+			int start = recordOffset + this.offset;
+			for (int i = 0; i < bytes.length; i++) {
+				if (data[start + i] != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Dates are stored as yyyyMMdd, so they can be compared as text
+	 */
+	private static class DateFieldValue extends FieldValue {
+
+		DateFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+		}
+
+		private boolean isDigits(byte[] data, int recordOffset) {
+			int start = recordOffset + this.offset;
+			for (int i = start; i < start + 8; i++) {
+				if (data[i] < '0' || data[i] > '9') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		boolean isNull(byte[] data, int recordOffset) {
+			if (super.isNull(data, recordOffset)) {
+				return true;
+			}
+			return !isDigits(data, recordOffset) && this.reader.decodeColumn(this.fieldIndex, data, recordOffset) == null;
+		}
+
+		@Override
+		Object convert(Object value) {
+			String text;
+			if (value instanceof Date) {
+				text = new SimpleDateFormat("yyyyMMdd").format((Date) value);
+			}
+			else {
+				text = value.toString();
+			}
+			byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+			if (bytes.length != 8) {
+				throw invalidValue(value);
+			}
+			for (byte b : bytes) {
+				if (b < '0' || b > '9') {
+					throw invalidValue(value);
+				}
+			}
+			return bytes;
+		}
+
+		@Override
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			byte[] bytes = (byte[]) target;
+			if (!isDigits(data, recordOffset)) {
+				// not a plain date, compare the decoded value
+				Date date = (Date) this.reader.decodeColumn(this.fieldIndex, data, recordOffset);
+				return new SimpleDateFormat("yyyyMMdd").format(date).compareTo(new String(bytes, StandardCharsets.US_ASCII));
+			}
+			int start = recordOffset + this.offset;
+			for (int i = 0; i < 8; i++) {
+				int c = data[start + i] - bytes[i];
+				if (c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		}
+	}
+
+	private static class NumericFieldValue extends FieldValue {
+
+		NumericFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+		}
+
+		@Override
+		boolean isNull(byte[] data, int recordOffset) {
+			return super.isNull(data, recordOffset)
+				|| DBFUtils.numericTextScale(data, recordOffset + this.offset, this.length) == DBFUtils.NUMERIC_NULL;
+		}
+
+		@Override
+		Object convert(Object value) {
+			return toBigDecimal(value);
+		}
+
+		@Override
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			BigDecimal targetValue = (BigDecimal) target;
+			int start = recordOffset + this.offset;
+			int scale = DBFUtils.numericTextScale(data, start, this.length);
+			if (scale >= 0 && targetValue.scale() >= 0 && targetValue.scale() <= DBFUtils.MAX_SIMPLE_DIGITS
+					&& targetValue.precision() <= DBFUtils.MAX_SIMPLE_DIGITS) {
+				long unscaled = DBFUtils.numericTextUnscaledValue(data, start, this.length);
+				long targetUnscaled = targetValue.unscaledValue().longValue();
+				int targetScale = targetValue.scale();
+				// bring both values to the same scale, if it doesn't overflow
+				if (scale < targetScale && Math.abs(unscaled) <= Long.MAX_VALUE / DBFUtils.LONG_POWERS_OF_TEN[targetScale - scale]) {
+					return compareLong(unscaled * DBFUtils.LONG_POWERS_OF_TEN[targetScale - scale], targetUnscaled);
+				}
+				if (scale >= targetScale && Math.abs(targetUnscaled) <= Long.MAX_VALUE / DBFUtils.LONG_POWERS_OF_TEN[scale - targetScale]) {
+					return compareLong(unscaled, targetUnscaled * DBFUtils.LONG_POWERS_OF_TEN[scale - targetScale]);
+				}
+			}
+			BigDecimal value = (BigDecimal) DBFUtils.readNumericStoredAsText(data, start, this.length);
+			return value.compareTo(targetValue);
+		}
+	}
+
+	private static class LogicalFieldValue extends FieldValue {
+
+		LogicalFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+		}
+
+		@Override
+		boolean isNull(byte[] data, int recordOffset) {
+			return super.isNull(data, recordOffset) || DBFUtils.toBoolean(data[recordOffset + this.offset]) == null;
+		}
+
+		@Override
+		Object convert(Object value) {
+			if (value instanceof Boolean) {
+				return value;
+			}
+			throw invalidValue(value);
+		}
+
+		@Override
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			return ((Boolean) DBFUtils.toBoolean(data[recordOffset + this.offset])).compareTo((Boolean) target);
+		}
+	}
+
+	private static class IntegerFieldValue extends FieldValue {
+
+		IntegerFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+		}
+
+		@Override
+		Object convert(Object value) {
+			// a fractional target is kept as it is, so it never equals a stored value
+			return toTarget(toBigDecimal(value));
+		}
+
+		@Override
+		Object convertBound(Object value, RoundingMode mode) {
+			return toTarget(toBigDecimal(value).setScale(0, mode));
+		}
+
+		private static Object toTarget(BigDecimal value) {
+			try {
+				return Long.valueOf(value.longValueExact());
+			}
+			catch (ArithmeticException e) {
+				// fractional or out of range, compared as a BigDecimal
+				return value;
+			}
+		}
+
+		@Override
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			int value = this.reader.readIntegerField(data, recordOffset + this.offset);
+			if (target instanceof Long) {
+				return compareLong(value, ((Long) target).longValue());
+			}
+			return BigDecimal.valueOf(value).compareTo((BigDecimal) target);
+		}
+	}
+
+	/**
+	 * Any other type, the value is decoded to compare it
+	 */
+	private static class DecodedFieldValue extends FieldValue {
+
+		DecodedFieldValue(DBFReader reader, int fieldIndex) {
+			super(reader, fieldIndex);
+		}
+
+		@Override
+		boolean isNull(byte[] data, int recordOffset) {
+			return this.reader.decodeColumn(this.fieldIndex, data, recordOffset) == null;
+		}
+
+		@Override
+		Object convert(Object value) {
+			return value;
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		int compareTo(byte[] data, int recordOffset, Object target) {
+			Object value = this.reader.decodeColumn(this.fieldIndex, data, recordOffset);
+			if (value instanceof Number && target instanceof Number) {
+				if (isFloatingPoint(value) || isFloatingPoint(target)) {
+					// NaN and infinities have no BigDecimal form
+					return Double.compare(((Number) value).doubleValue(), ((Number) target).doubleValue());
+				}
+				return new BigDecimal(value.toString()).compareTo(new BigDecimal(target.toString()));
+			}
+			if (value instanceof byte[] && target instanceof byte[]) {
+				return compareUnsigned((byte[]) value, (byte[]) target);
+			}
+			if (value instanceof Comparable && value.getClass().isInstance(target)) {
+				return ((Comparable) value).compareTo(target);
+			}
+			if (value instanceof String) {
+				return ((String) value).compareTo(target.toString());
+			}
+			throw invalidValue(target);
+		}
+	}
+
+	private static boolean isFloatingPoint(Object value) {
+		return value instanceof Double || value instanceof Float;
+	}
+
+	/**
+	 * Compares binary values lexicographically, as unsigned bytes
+	 */
+	private static int compareUnsigned(byte[] x, byte[] y) {
+		int length = Math.min(x.length, y.length);
+		for (int i = 0; i < length; i++) {
+			int cmp = (x[i] & 0xFF) - (y[i] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return x.length - y.length;
+	}
+
+	private static int compareLong(long x, long y) {
+		return (x < y) ? -1 : ((x == y) ? 0 : 1);
+	}
+}
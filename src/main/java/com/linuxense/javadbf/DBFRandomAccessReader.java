@@ -0,0 +1,364 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * DBFReader backed by a file, allowing random access to the records.
+ * <p>
+ * The data region of the file is memory mapped, so any record can be read
+ * in constant time with {@link #getRecord(int)} or {@link #getRow(int)}, or
+ * the sequential cursor used by {@link #nextRecord()} can be moved with
+ * {@link #seek(int)}.
+ * </p>
+ * <p>
+ * Files bigger than 2GB are mapped in several segments, each one holding a
+ * whole number of records.
+ * </p>
+ * <p>
+ * To read the file in parallel use {@link #spliterator()}, the returned
+ * DBFRowSpliterator instances can be used from different threads.
+ * </p>
+ * <p>
+ * Instances of this class are not thread safe.
+ * </p>
+ */
+public class DBFRandomAccessReader extends DBFReader {
+
+	private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+	private FileChannel channel;
+	private int recordLength;
+	private int recordCount;
+	private int recordsPerSegment;
+	private MappedByteBuffer[] segments;
+	private MappedRecordInputStream mappedInputStream;
+
+	/**
+	 * Opens a DBF file for random access.
+	 * Tries to detect charset from file, if failed uses default charset ISO-8859-1
+	 * @param file the DBF file
+	 */
+	public DBFRandomAccessReader(File file) {
+		this(file, null, false);
+	}
+
+	/**
+	 * Opens a DBF file for random access.
+	 * @param file the DBF file
+	 * @param charset charset used to decode field names and field contents. If null, then is autedetected from dbf file
+	 */
+	public DBFRandomAccessReader(File file, Charset charset) {
+		this(file, charset, false);
+	}
+
+	/**
+	 * Opens a DBF file for random access.
+	 * @param file the DBF file
+	 * @param charset charset used to decode field names and field contents. If null, then is autedetected from dbf file
+	 * @param showDeletedRows can be used to identify records that have been deleted.
+	 */
+	public DBFRandomAccessReader(File file, Charset charset, boolean showDeletedRows) {
+		this(openFile(file), charset, showDeletedRows);
+	}
+
+	private DBFRandomAccessReader(FileInputStream in, Charset charset, boolean showDeletedRows) {
+		super(new BufferedInputStream(in), charset, showDeletedRows);
+		try {
+			this.channel = in.getChannel();
+			DBFHeader header = getHeader();
+			this.recordLength = header.recordLength;
+			long available = Math.max(0L, this.channel.size() - header.headerLength);
+			this.recordCount = (int) Math.min(header.numberOfRecords, available / this.recordLength);
+			this.recordsPerSegment = (int) Math.max(1L, MAX_SEGMENT_SIZE / this.recordLength);
+			int segmentCount = (this.recordCount + this.recordsPerSegment - 1) / this.recordsPerSegment;
+			this.segments = new MappedByteBuffer[segmentCount];
+			this.mappedInputStream = new MappedRecordInputStream();
+			this.dataInputStream = new DataInputStream(this.mappedInputStream);
+		}
+		catch (IOException e) {
+			DBFUtils.close(this.inputStream);
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	private static FileInputStream openFile(File file) {
+		try {
+			return new FileInputStream(file);
+		}
+		catch (FileNotFoundException e) {
+			throw new DBFException("Specified file is not found. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the number of records that can be accessed by index. It can be
+	 * less than {@link #getRecordCount()} if the file is truncated.
+	 * @return number of records available in the file
+	 */
+	public int getAvailableRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * Moves the sequential cursor, so the next call to {@link #nextRecord()}
+	 * or {@link #nextRow()} starts reading at the given record.
+	 * @param index index of the record, first record is zero.
+	 */
+	public void seek(int index) {
+		checkOpen();
+		if (index < 0 || index > this.recordCount) {
+			throw new IllegalArgumentException("Invalid record index: (" + index + "). Valid range is 0 to " + this.recordCount);
+		}
+		this.mappedInputStream.position(index);
+	}
+
+	/**
+	 * Checks if a record is marked as deleted
+	 * @param index index of the record, first record is zero.
+	 * @return true if the record is deleted
+	 */
+	public boolean isDeleted(int index) {
+		checkOpen();
+		checkIndex(index);
+		ByteBuffer segment = getSegment(index / this.recordsPerSegment);
+		return segment.get((index % this.recordsPerSegment) * this.recordLength) == '*';
+	}
+
+	/**
+	 * Reads the record at the given position. The sequential cursor is left
+	 * just after this record.
+	 * @param index index of the record, first record is zero.
+	 * @return The record as an Object array, or null if the record is deleted
+	 *          and deleted rows are not shown, or doesn't match the filter.
+	 */
+	public Object[] getRecord(int index) {
+		checkOpen();
+		checkIndex(index);
+		this.mappedInputStream.position(index);
+		return readSingleRecord();
+	}
+
+	/**
+	 * Reads the record at the given position. The sequential cursor is left
+	 * just after this record.
+	 * @param index index of the record, first record is zero.
+	 * @return The record as DBFRow, or null if the record is deleted and
+	 *          deleted rows are not shown, or doesn't match the filter.
+	 */
+	public DBFRow getRow(int index) {
+		checkOpen();
+		checkIndex(index);
+		this.mappedInputStream.position(index);
+		return readSingleRow();
+	}
+
+	/**
+	 * Iterates over the rows in the range [fromIndex, toIndex).
+	 * Deleted records are skipped unless deleted rows are shown, and records
+	 * that doesn't match the filter are skipped. The iterator moves the sequential cursor of this reader.
+	 * @param fromIndex index of the first record, inclusive
+	 * @param toIndex index of the last record, exclusive
+	 * @return an iterator over the rows
+	 */
+	public Iterator<DBFRow> iterator(int fromIndex, int toIndex) {
+		checkOpen();
+		checkRange(fromIndex, toIndex);
+		return new RangeIterator(fromIndex, toIndex);
+	}
+
+	/**
+	 * Creates a DBFRowSpliterator over all the records, that can be split to
+	 * read the file in parallel.
+	 * @return a DBFRowSpliterator over all the records
+	 */
+	public DBFRowSpliterator spliterator() {
+		return spliterator(0, this.recordCount);
+	}
+
+	/**
+	 * Creates a DBFRowSpliterator over the records in the range [fromIndex, toIndex).
+	 * It doesn't move the sequential cursor of this reader.
+	 * @param fromIndex index of the first record, inclusive
+	 * @param toIndex index of the last record, exclusive
+	 * @return a DBFRowSpliterator over the records
+	 */
+	public DBFRowSpliterator spliterator(int fromIndex, int toIndex) {
+		checkOpen();
+		checkRange(fromIndex, toIndex);
+		return new DBFRowSpliterator(this, this.channel, getHeader().headerLength, this.recordLength,
+				fromIndex, toIndex);
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		DBFUtils.close(this.inputStream);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= this.recordCount) {
+			throw new IllegalArgumentException("Invalid record index: (" + index + "). Valid range is 0 to " + (this.recordCount - 1));
+		}
+	}
+
+	private void checkRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > this.recordCount || fromIndex > toIndex) {
+			throw new IllegalArgumentException("Invalid range: (" + fromIndex + ", " + toIndex + "). Valid range is 0 to " + this.recordCount);
+		}
+	}
+
+	private void checkOpen() {
+		if (isClosed()) {
+			throw new IllegalStateException("this DBFReader is closed");
+		}
+	}
+
+	private MappedByteBuffer getSegment(int segmentIndex) {
+		MappedByteBuffer segment = this.segments[segmentIndex];
+		if (segment == null) {
+			long firstRecord = (long) segmentIndex * this.recordsPerSegment;
+			long records = Math.min(this.recordsPerSegment, this.recordCount - firstRecord);
+			long position = getHeader().headerLength + firstRecord * this.recordLength;
+			try {
+				segment = this.channel.map(FileChannel.MapMode.READ_ONLY, position, records * this.recordLength);
+			}
+			catch (IOException e) {
+				throw new DBFException(e.getMessage(), e);
+			}
+			this.segments[segmentIndex] = segment;
+		}
+		return segment;
+	}
+
+	private class RangeIterator implements Iterator<DBFRow> {
+		private int current;
+		private final int end;
+		private DBFRow next;
+
+		RangeIterator(int fromIndex, int toIndex) {
+			this.current = fromIndex;
+			this.end = toIndex;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (this.next == null && this.current < this.end) {
+				this.next = getRow(this.current++);
+			}
+			return this.next != null;
+		}
+
+		@Override
+		public DBFRow next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			DBFRow row = this.next;
+			this.next = null;
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("DBFRandomAccessReader is read only");
+		}
+	}
+
+	/**
+	 * InputStream over the mapped segments, used by the decoding methods in DBFReader.
+	 */
+	private class MappedRecordInputStream extends InputStream {
+		private int segmentIndex = -1;
+		private ByteBuffer current = ByteBuffer.allocate(0);
+
+		void position(int recordIndex) {
+			resetRecordBuffer();
+			if (recordIndex >= recordCount) {
+				this.segmentIndex = segments.length;
+				this.current = ByteBuffer.allocate(0);
+				return;
+			}
+			this.segmentIndex = recordIndex / recordsPerSegment;
+			this.current = getSegment(this.segmentIndex).duplicate();
+			this.current.position((recordIndex % recordsPerSegment) * recordLength);
+		}
+
+		private boolean ensureAvailable() {
+			while (!this.current.hasRemaining()) {
+				if (this.segmentIndex + 1 >= segments.length) {
+					return false;
+				}
+				this.segmentIndex++;
+				this.current = getSegment(this.segmentIndex).duplicate();
+			}
+			return true;
+		}
+
+		@Override
+		public int read() {
+			if (!ensureAvailable()) {
+				return -1;
+			}
+			return this.current.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!ensureAvailable()) {
+				return -1;
+			}
+			int count = Math.min(len, this.current.remaining());
+			this.current.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = 0;
+			while (skipped < n && ensureAvailable()) {
+				int count = (int) Math.min(n - skipped, this.current.remaining());
+				this.current.position(this.current.position() + count);
+				skipped += count;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return this.current.remaining();
+		}
+	}
+}
@@ -29,17 +29,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -55,7 +52,11 @@ import java.util.TimeZone;
  * <p>
  * Fetching records is possible only in the forward direction and cannot be
  * re-wound. In such situations, a suggested approach is to reconstruct the
- * object.
+ * object, or use {@link DBFRandomAccessReader} when reading from a file.
+ * </p>
+ * <p>
+ * Records are read from a stream, so they can not be split to read them in
+ * parallel: only {@link DBFRandomAccessReader#spliterator()} supports it.
  * </p>
  * <p>
  * The nextRecord() method returns an array of Objects and the types of these
@@ -139,11 +140,18 @@ import java.util.TimeZone;
  * </tr>
  * </tbody>
  * </table>
+ * <p>
+ * If the memo file is read lazily (see {@link DBFMemoOptions#setLazy(boolean)})
+ * the values of M, B, G and P fields stored in the memo file are returned as
+ * {@link DBFMemoReference}.
+ * </p>
  */
 public class DBFReader extends DBFBase implements Closeable {
 
 	private static final long MILLISECS_PER_DAY = 24*60*60*1000;
 	private static final long TIME_MILLIS_1_1_4713_BC = -210866803200000L;
+	/** first year fully in the gregorian calendar */
+	private static final int FIRST_GREGORIAN_YEAR = 1583;
 
 	protected InputStream inputStream;
 	protected DataInputStream dataInputStream;
@@ -158,6 +166,21 @@ public class DBFReader extends DBFBase implements Closeable {
 	
 	private boolean showDeletedRows = false;
 
+	private boolean lazyRows = false;
+
+	private DBFPredicate filter = null;
+	private DBFPredicate.Matcher filterMatcher = null;
+
+	private final TimeZone timeZone = TimeZone.getDefault();
+
+	private DBFRecordLayout layout;
+	private DBFField[] columns;
+	private int[] columnFieldIndexes;
+	private byte[] fieldBuffer = new byte[0];
+	private byte[] recordBuffer;
+	private int recordBufferPosition = 0;
+	private int recordBufferLimit = 0;
+
 	/**
 	 * Intializes a DBFReader object.
 	 *
@@ -227,7 +250,9 @@ public class DBFReader extends DBFBase implements Closeable {
 			int t_dataStartIndex = this.header.headerLength - (tableSize + (fieldSize * this.header.fieldArray.length)) - 1;			
 			skip(t_dataStartIndex);
 			
-			this.mapFieldNames = createMapFieldNames(this.header.userFieldArray);
+			this.layout = new DBFRecordLayout(this.header.fieldArray);
+			setColumns(allColumnIndexes());
+			this.recordBuffer = new byte[Math.max(this.header.recordLength, 1)];
 		} catch (IOException e) {
 			DBFUtils.close(dataInputStream);
 			DBFUtils.close(in);
@@ -246,6 +271,117 @@ public class DBFReader extends DBFBase implements Closeable {
 	}
 
 
+	private int[] allColumnIndexes() {
+		int[] indexes = new int[this.header.userFieldArray.length];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = i;
+		}
+		return indexes;
+	}
+
+	private void setColumns(int[] userFieldIndexes) {
+		DBFField[] newColumns = new DBFField[userFieldIndexes.length];
+		int[] newFieldIndexes = new int[userFieldIndexes.length];
+		for (int i = 0; i < userFieldIndexes.length; i++) {
+			int index = userFieldIndexes[i];
+			if (index < 0 || index >= this.header.userFieldArray.length) {
+				throw new IllegalArgumentException("Invalid index field: (" + index+"). Valid range is 0 to " + (this.header.userFieldArray.length - 1));
+			}
+			newColumns[i] = this.header.userFieldArray[index];
+			// -1 is the deleted flag, it is not a field of the file
+			newFieldIndexes[i] = -1;
+			for (int j = 0; j < this.header.fieldArray.length; j++) {
+				if (this.header.fieldArray[j] == newColumns[i]) {
+					newFieldIndexes[i] = j;
+					break;
+				}
+			}
+		}
+		this.columns = newColumns;
+		this.columnFieldIndexes = newFieldIndexes;
+		this.mapFieldNames = createMapFieldNames(newColumns);
+	}
+
+	/**
+	 * Selects the fields returned by this reader, in the given order.
+	 * <p>
+	 * Only the selected fields are decoded, the rest of the record is skipped.
+	 * After this call {@link #getFieldCount()}, {@link #getField(int)}, the
+	 * arrays returned by {@link #nextRecord()} and the rows returned by
+	 * {@link #nextRow()} contain only the selected fields.
+	 * </p>
+	 * @param fieldNames names of the fields to read (case insensitive)
+	 */
+	public void setProjection(String... fieldNames) {
+		Map<String, Integer> allFieldNames = createMapFieldNames(this.header.userFieldArray);
+		int[] indexes = new int[fieldNames.length];
+		for (int i = 0; i < fieldNames.length; i++) {
+			Integer index = allFieldNames.get(fieldNames[i].toLowerCase());
+			if (index == null) {
+				throw new DBFFieldNotFoundException("No field found for:" + fieldNames[i]);
+			}
+			indexes[i] = index.intValue();
+		}
+		setColumns(indexes);
+	}
+
+	/**
+	 * Selects the fields returned by this reader, in the given order.
+	 * @see #setProjection(String...)
+	 * @param fieldIndexes indexes of the fields to read, as returned by the
+	 *        reader without projection. Index of the first field is zero.
+	 */
+	public void setProjection(int... fieldIndexes) {
+		setColumns(fieldIndexes.clone());
+	}
+
+	/**
+	 * Removes the projection, so all the fields are returned again.
+	 */
+	public void clearProjection() {
+		setColumns(allColumnIndexes());
+	}
+
+	/**
+	 * Sets a filter, only records that match it are returned.
+	 * <p>
+	 * The filter is checked against the raw bytes of each record, records that
+	 * doesn't match are skipped without decoding them.
+	 * </p>
+	 * @param filter the filter, or null to return all records
+	 */
+	public void setFilter(DBFPredicate filter) {
+		this.filterMatcher = filter != null ? filter.compile(this) : null;
+		this.filter = filter;
+	}
+
+	/**
+	 * Gets the filter of the records
+	 * @return the filter, or null if all the records are returned
+	 */
+	public DBFPredicate getFilter() {
+		return this.filter;
+	}
+
+	/**
+	 * Gets the index of a field in the file, including system fields.
+	 * @param fieldName name of the field (case insensitive)
+	 * @return the index of the field
+	 */
+	int getFieldIndex(String fieldName) {
+		DBFField[] fields = this.header.fieldArray;
+		for (int i = 0; i < fields.length; i++) {
+			if (!fields[i].isSystem() && fields[i].getName().equalsIgnoreCase(fieldName)) {
+				return i;
+			}
+		}
+		throw new DBFFieldNotFoundException("No field found for:" + fieldName);
+	}
+
+	DBFRecordLayout getLayout() {
+		return this.layout;
+	}
+
 	/**
 		Returns the number of records in the DBF. This number includes deleted (hidden) records
 		@return number of records in the DBF file.
@@ -273,18 +409,19 @@ public class DBFReader extends DBFBase implements Closeable {
 	 * @return Field definition for selected field
 	 */
 	public DBFField getField(int index) {
-		if (index < 0 || index >= this.header.userFieldArray.length) {
-			throw new IllegalArgumentException("Invalid index field: (" + index+"). Valid range is 0 to " + (this.header.userFieldArray.length - 1));
+		if (index < 0 || index >= this.columns.length) {
+			throw new IllegalArgumentException("Invalid index field: (" + index+"). Valid range is 0 to " + (this.columns.length - 1));
 		}
-		return new DBFField(this.header.userFieldArray[index]);
+		return new DBFField(this.columns[index]);
 	}
 
 	/**
 	 * Returns the number of field in the DBF.
+	 * If a projection is set, only the selected fields are counted.
 	 * @return number of fields in the DBF file 
 	 */
 	public int getFieldCount() {
-		return this.header.userFieldArray.length;
+		return this.columns.length;
 	}
 
 	/**
@@ -297,227 +434,568 @@ public class DBFReader extends DBFBase implements Closeable {
 		if (this.closed) {
 			throw new IllegalArgumentException("this DBFReader is closed");
 		}
-		List<Object> recordObjects = new ArrayList<>(this.getFieldCount());
-		try {
-			boolean isDeleted = false;
-
-			do {
-				try {
-					if (isDeleted && !showDeletedRows) {
-						skip(this.header.recordLength - 1);
-					}
-					int t_byte = this.dataInputStream.readByte();
-					if (t_byte == END_OF_DATA || t_byte == -1) {
-						return null;
-					}
-					isDeleted = t_byte == '*';
-				}
-				catch (EOFException e) {
-					return null;
-				}
-			} while (isDeleted && !showDeletedRows);
+		Object[] values = new Object[getFieldCount()];
+		if (!readBufferedRecord(values)) {
+			return null;
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the next row in the DBF stream into the given array.
+	 *
+	 * Reusing the same array for all the records allows to read the file
+	 * without allocating anything apart from the values themselves. Numeric
+	 * values are still decoded as BigDecimal; see {@link #setLazyRows(boolean)}
+	 * to read them as primitives.
+	 *
+	 * @param values array to fill, with {@link #getFieldCount()} elements
+	 * @return the values array or null if there are no more records.
+	 */
+	public Object[] nextRecord(Object[] values) {
+		if (this.closed) {
+			throw new IllegalArgumentException("this DBFReader is closed");
+		}
+		if (values == null || values.length != getFieldCount()) {
+			throw new IllegalArgumentException("Values array must have " + getFieldCount() + " elements");
+		}
+		if (!readBufferedRecord(values)) {
+			return null;
+		}
+		return values;
+	}
 
-			if(showDeletedRows) {
-				recordObjects.add(isDeleted);
+	/**
+	 * Reads the returns the next row in the DBF stream.
+	 *
+	 * @return The next row as an DBFRow
+	 */
+	public DBFRow nextRow() {
+		if (this.lazyRows) {
+			if (this.closed) {
+				throw new IllegalArgumentException("this DBFReader is closed");
 			}
+			int offset = readRawRecord();
+			if (offset < 0) {
+				return null;
+			}
+			return createLazyRow(this.recordBuffer, offset);
+		}
+		Object[] record = nextRecord();
+		if (record == null) {
+			return null;
+		}
+		return createRow(record);
+	}
+
+	protected DBFRow createRow(Object[] record) {
+		return new DBFRow(record, this.mapFieldNames, this.columns, this.timeZone);
+	}
+
+	/**
+	 * The time zone used to decode dates and timestamps, the default one when the reader was created
+	 */
+	TimeZone getTimeZone() {
+		return this.timeZone;
+	}
+
+	/**
+	 * Sets the size of the internal buffer used to read records, in number of records.
+	 * <p>
+	 * Records are read from the stream in blocks of whole records into a reused
+	 * buffer and fields are decoded directly from it. By default the buffer
+	 * holds one record, a bigger buffer reduces the number of reads issued to the
+	 * underlying stream.
+	 * </p>
+	 * @param numberOfRecords number of records that fit in the buffer
+	 */
+	public void setRecordBufferSize(int numberOfRecords) {
+		if (numberOfRecords < 1) {
+			throw new IllegalArgumentException("Buffer size must hold at least one record");
+		}
+		int pending = this.recordBufferLimit - this.recordBufferPosition;
+		byte[] newBuffer = new byte[Math.max(numberOfRecords * this.header.recordLength, pending)];
+		System.arraycopy(this.recordBuffer, this.recordBufferPosition, newBuffer, 0, pending);
+		this.recordBuffer = newBuffer;
+		this.recordBufferPosition = 0;
+		this.recordBufferLimit = pending;
+	}
+
+	/**
+	 * Discard the data readed in advance in the record buffer, used when the
+	 * position in the underlying stream changes.
+	 */
+	void resetRecordBuffer() {
+		this.recordBufferPosition = 0;
+		this.recordBufferLimit = 0;
+	}
+
+	private boolean readBufferedRecord(Object[] values) {
+		int offset = readRawRecord();
+		if (offset < 0) {
+			return false;
+		}
+		decodeRecord(this.recordBuffer, offset, values);
+		return true;
+	}
+
+	/**
+	 * Reads the next record that must be returned into the record buffer
+	 * @return the offset of the record in the buffer, or -1 if there are no more records
+	 */
+	private int readRawRecord() {
+		return readRawRecord(false);
+	}
 
-			for (int i = 0; i < this.header.fieldArray.length; i++) {
-				DBFField field = this.header.fieldArray[i];
-				Object o = getFieldValue(field);
-				if (field.isSystem()) {
-					if (field.getType() == DBFDataType.NULL_FLAGS && o instanceof BitSet) {
-						BitSet nullFlags = (BitSet) o;
-						int currentIndex = -1;
-						for (int j = 0; j < this.header.fieldArray.length; j++) {
-							DBFField field1 = this.header.fieldArray[j];
-							if (field1.isNullable()) {
-								currentIndex++;
-								if (nullFlags.get(currentIndex)) {
-									recordObjects.set(j, null);
-								}
-							}
-							if (field1.getType() == DBFDataType.VARBINARY || field1.getType() == DBFDataType.VARCHAR){
-								currentIndex++;
-								if (recordObjects.get(i) instanceof byte[]) {
-									byte[] data = (byte[]) recordObjects.get(j);
-									int size = field1.getLength();
-									if (!nullFlags.get(currentIndex)) {
-										// Data is not full
-										size = data[data.length-1];
-									}
-									byte[] newData = new byte[size];
-									System.arraycopy(data, 0, newData, 0, size);
-									Object o1 = newData;
-									if (field1.getType() == DBFDataType.VARCHAR) {
-										o1 = new String(newData, getCharset());
-									}
-									recordObjects.set(j, o1);
-								}
-							}
-						}
-					}
+	/**
+	 * Reads the next record into the record buffer
+	 * @param single if only one record must be read, even if it is not returned
+	 * @return the offset of the record in the buffer, -1 if there are no more
+	 *         records or -2 if the record must not be returned (single mode)
+	 */
+	private int readRawRecord(boolean single) {
+		try {
+			int recordLength = this.header.recordLength;
+			while (fillRecordBuffer()) {
+				int offset = this.recordBufferPosition;
+				byte t_byte = this.recordBuffer[offset];
+				if (t_byte == END_OF_DATA) {
+					return -1;
+				}
+				if (this.recordBufferLimit - offset < recordLength) {
+					throw new EOFException("Unexpected end of file");
+				}
+				this.recordBufferPosition += recordLength;
+				if (isAccepted(this.recordBuffer, offset)) {
+					return offset;
 				}
-				else {
-					recordObjects.add(o);
+				if (single) {
+					return -2;
 				}
 			}
-		} catch (EOFException e) {
+			return -1;
+		} catch (IOException e) {
 			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Checks if a record must be returned, it's not deleted (unless deleted
+	 * rows are shown) and matches the filter.
+	 * @param data the buffer
+	 * @param offset position of the record in the buffer
+	 * @return true if the record must be returned
+	 */
+	boolean isAccepted(byte[] data, int offset) {
+		if (data[offset] == '*' && !this.showDeletedRows) {
+			return false;
+		}
+		return this.filterMatcher == null || this.filterMatcher.matches(data, offset);
+	}
+
+	/**
+	 * Reads exactly one record from the stream.
+	 * @return the record, or null if it is deleted, doesn't match the filter
+	 *         or there are no more records
+	 */
+	Object[] readSingleRecord() {
+		int offset = readRawRecord(true);
+		if (offset < 0) {
+			return null;
+		}
+		Object[] values = new Object[getFieldCount()];
+		decodeRecord(this.recordBuffer, offset, values);
+		return values;
+	}
+
+	/**
+	 * Reads exactly one record from the stream.
+	 * @return the row, or null if it is deleted, doesn't match the filter
+	 *         or there are no more records
+	 */
+	DBFRow readSingleRow() {
+		int offset = readRawRecord(true);
+		if (offset < 0) {
+			return null;
+		}
+		return decodeRow(this.recordBuffer, offset);
+	}
+
+	/**
+	 * Ensures that the buffer contains a full record, reading from the stream if necessary.
+	 * @return false if the end of the stream has been reached and there is no more data
+	 */
+	private boolean fillRecordBuffer() throws IOException {
+		int recordLength = this.header.recordLength;
+		int pending = this.recordBufferLimit - this.recordBufferPosition;
+		if (pending >= recordLength) {
+			return true;
+		}
+		if (pending > 0) {
+			System.arraycopy(this.recordBuffer, this.recordBufferPosition, this.recordBuffer, 0, pending);
+		}
+		this.recordBufferPosition = 0;
+		this.recordBufferLimit = pending;
+		while (this.recordBufferLimit < recordLength) {
+			int readed = this.dataInputStream.read(this.recordBuffer, this.recordBufferLimit, this.recordBuffer.length - this.recordBufferLimit);
+			if (readed < 0) {
+				break;
+			}
+			this.recordBufferLimit += readed;
+		}
+		return this.recordBufferLimit > 0;
+	}
+
+	/**
+	 * Decodes a record stored in a buffer, without using the stream.
+	 * @param data the buffer
+	 * @param offset position of the record in the buffer
+	 * @return the record as DBFRow
+	 */
+	DBFRow decodeRow(byte[] data, int offset) {
+		if (this.lazyRows) {
+			return createLazyRow(data, offset);
+		}
+		Object[] values = new Object[getFieldCount()];
+		decodeRecord(data, offset, values);
+		return createRow(values);
+	}
+
+	private DBFRow createLazyRow(byte[] data, int offset) {
+		byte[] record = Arrays.copyOfRange(data, offset, offset + this.header.recordLength);
+		return new DBFLazyRow(this, record, this.columnFieldIndexes, this.mapFieldNames, this.columns);
+	}
+
+	private void decodeRecord(byte[] data, int offset, Object[] values) {
+		for (int i = 0; i < this.columnFieldIndexes.length; i++) {
+			values[i] = decodeColumn(this.columnFieldIndexes[i], data, offset);
+		}
+	}
+
+	/**
+	 * Decodes a column of a record
+	 * @param fieldIndex index of the field in the file, or -1 for the deleted flag
+	 * @param data the buffer
+	 * @param recordOffset position of the record in the buffer
+	 * @return the value of the column
+	 */
+	Object decodeColumn(int fieldIndex, byte[] data, int recordOffset) {
+		if (fieldIndex < 0) {
+			return data[recordOffset] == '*';
+		}
+		try {
+			return decodeField(fieldIndex, data, recordOffset);
 		} catch (IOException e) {
 			throw new DBFException(e.getMessage(), e);
 		}
-		return recordObjects.toArray();
 	}
+
 	/**
-	 * Reads the returns the next row in the DBF stream.
-	 *
-	 * @return The next row as an DBFRow
+	 * Checks if a field is a number stored as text
+	 * @param fieldIndex index of the field in the file, or -1 for the deleted flag
+	 * @return true for numeric and floating point fields
 	 */
-	public DBFRow nextRow() {
-		Object[] record = nextRecord();
-		if (record == null) {
+	boolean isNumericStoredAsText(int fieldIndex) {
+		if (fieldIndex < 0) {
+			return false;
+		}
+		DBFDataType type = this.layout.getField(fieldIndex).getType();
+		return type == DBFDataType.NUMERIC || type == DBFDataType.FLOATING_POINT;
+	}
+
+	/**
+	 * Decodes a numeric field of a record as a long, without creating a BigDecimal
+	 * @param fieldIndex index of the field in the file
+	 * @param data the buffer
+	 * @param recordOffset position of the record in the buffer
+	 * @return the value of the field, 0 if null
+	 */
+	long decodeLong(int fieldIndex, byte[] data, int recordOffset) {
+		if (this.layout.isNull(fieldIndex, data, recordOffset)) {
+			return 0;
+		}
+		return DBFUtils.readNumericStoredAsLong(data, recordOffset + this.layout.getOffset(fieldIndex), this.layout.getField(fieldIndex).getLength());
+	}
+
+	/**
+	 * Decodes a numeric field of a record as a double, without creating a BigDecimal
+	 * @param fieldIndex index of the field in the file
+	 * @param data the buffer
+	 * @param recordOffset position of the record in the buffer
+	 * @return the value of the field, 0 if null
+	 */
+	double decodeDouble(int fieldIndex, byte[] data, int recordOffset) {
+		if (this.layout.isNull(fieldIndex, data, recordOffset)) {
+			return 0;
+		}
+		return DBFUtils.readNumericStoredAsDouble(data, recordOffset + this.layout.getOffset(fieldIndex), this.layout.getField(fieldIndex).getLength());
+	}
+
+	/**
+	 * Checks if a field is a date
+	 * @param fieldIndex index of the field in the file, or -1 for the deleted flag
+	 * @return true for date fields
+	 */
+	boolean isDateField(int fieldIndex) {
+		return fieldIndex >= 0 && this.layout.getField(fieldIndex).getType() == DBFDataType.DATE;
+	}
+
+	/**
+	 * Decodes a date field of a record as an int in the form yyyyMMdd,
+	 * without creating a Date for valid dates
+	 * @param fieldIndex index of the field in the file
+	 * @param data the buffer
+	 * @param recordOffset position of the record in the buffer
+	 * @return the value of the field, 0 if null
+	 */
+	int decodeDateAsInt(int fieldIndex, byte[] data, int recordOffset) {
+		if (this.layout.isNull(fieldIndex, data, recordOffset)) {
+			return 0;
+		}
+		int offset = recordOffset + this.layout.getOffset(fieldIndex);
+		int value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			if (data[i] < '0' || data[i] > '9') {
+				return DBFRow.toDateAsInt(readDateField(data, offset), this.timeZone);
+			}
+			value = value * 10 + (data[i] - '0');
+		}
+		int year = value / 10000;
+		int month = value / 100 % 100;
+		int day = value % 100;
+		if (year < FIRST_GREGORIAN_YEAR || month < 1 || month > 12 || day < 1
+				|| day > daysFromCivil(year + month / 12, month % 12 + 1) - daysFromCivil(year, month)) {
+			// normalized as a Date
+			return DBFRow.toDateAsInt(readDateField(data, offset), this.timeZone);
+		}
+		return value;
+	}
+
+	/**
+	 * Checks if a field is a timestamp
+	 * @param fieldIndex index of the field in the file, or -1 for the deleted flag
+	 * @return true for timestamp fields
+	 */
+	boolean isTimestampField(int fieldIndex) {
+		if (fieldIndex < 0) {
+			return false;
+		}
+		DBFDataType type = this.layout.getField(fieldIndex).getType();
+		return type == DBFDataType.TIMESTAMP || type == DBFDataType.TIMESTAMP_DBASE7;
+	}
+
+	/**
+	 * Decodes a timestamp field of a record as milliseconds since the epoch,
+	 * from the julian day and milliseconds stored in it, without creating a Date
+	 * @param fieldIndex index of the field in the file
+	 * @param data the buffer
+	 * @param recordOffset position of the record in the buffer
+	 * @return the value of the field, 0 if null
+	 */
+	long decodeTimestampMillis(int fieldIndex, byte[] data, int recordOffset) {
+		if (this.layout.isNull(fieldIndex, data, recordOffset)) {
+			return 0;
+		}
+		int offset = recordOffset + this.layout.getOffset(fieldIndex);
+		int days = DBFUtils.readLittleEndianInt(data, offset);
+		int time = DBFUtils.readLittleEndianInt(data, offset + 4);
+		if (days == 0 && time == 0) {
+			return 0;
+		}
+		return toEpochMillis(days, time);
+	}
+
+	private long toEpochMillis(int days, int time) {
+		long millis = days * MILLISECS_PER_DAY + TIME_MILLIS_1_1_4713_BC + time;
+		return millis - this.timeZone.getOffset(millis);
+	}
+
+	private Object decodeField(int fieldIndex, byte[] data, int recordOffset) throws IOException {
+		if (this.layout.isNull(fieldIndex, data, recordOffset)) {
 			return null;
 		}
-		return new DBFRow(record, mapFieldNames, this.header.fieldArray);
+		DBFField field = this.layout.getField(fieldIndex);
+		int offset = recordOffset + this.layout.getOffset(fieldIndex);
+		if (this.layout.hasVariableLength(fieldIndex)) {
+			int size = this.layout.getVariableLength(fieldIndex, data, recordOffset);
+			if (field.getType() == DBFDataType.VARCHAR) {
+				return new String(data, offset, size, getCharset());
+			}
+			return Arrays.copyOfRange(data, offset, offset + size);
+		}
+		return getFieldValue(field, data, offset);
 	}
 
 	protected Object getFieldValue(DBFField field) throws IOException {
-		int bytesReaded = 0;
+		int length = field.getLength();
+		if (this.fieldBuffer.length < length) {
+			this.fieldBuffer = new byte[length];
+		}
+		try {
+			this.dataInputStream.readFully(this.fieldBuffer, 0, length);
+		}
+		catch (EOFException e) {
+			throw new EOFException("Unexpected end of file");
+		}
+		return getFieldValue(field, this.fieldBuffer, 0);
+	}
+
+	/**
+	 * Decodes the value of a field stored in a buffer
+	 * @param field the field definition
+	 * @param data the buffer
+	 * @param offset position of the field in the buffer
+	 * @return the value of the field
+	 * @throws IOException if an IO error happens reading memo fields
+	 */
+	protected Object getFieldValue(DBFField field, byte[] data, int offset) throws IOException {
+		int length = field.getLength();
 		switch (field.getType()) {
 		case CHARACTER:
-			byte b_array[] = new byte[field.getLength()];
-			bytesReaded = this.dataInputStream.read(b_array);
-			if (bytesReaded < field.getLength()) {
-				throw new EOFException("Unexpected end of file");
-			}
 			if (this.trimRightSpaces) {
-				return new String(DBFUtils.trimRightSpaces(b_array), getCharset());
+				return new String(data, offset, DBFUtils.rightTrimmedLength(data, offset, length), getCharset());
 			}
 			else {
-				return new String(b_array, getCharset());
+				return new String(data, offset, length, getCharset());
 			}
 
 		case VARCHAR:
 		case VARBINARY:
-			byte b_array_var[] = new byte[field.getLength()];
-			bytesReaded = this.dataInputStream.read(b_array_var);
-			if (bytesReaded < field.getLength()) {
-				throw new EOFException("Unexpected end of file");
-			}
-			return b_array_var;
+			return Arrays.copyOfRange(data, offset, offset + length);
 		case DATE:
-
-			byte t_byte_year[] = new byte[4];
-			bytesReaded = this.dataInputStream.read(t_byte_year);
-			if (bytesReaded < 4) {
-				throw new EOFException("Unexpected end of file");
-			}
-
-			byte t_byte_month[] = new byte[2];
-			bytesReaded = this.dataInputStream.read(t_byte_month);
-			if (bytesReaded < 2) {
-				throw new EOFException("Unexpected end of file");
-			}
-
-			byte t_byte_day[] = new byte[2];
-			bytesReaded = this.dataInputStream.read(t_byte_day);
-			if (bytesReaded < 2) {
-				throw new EOFException("Unexpected end of file");
-			}
-
-			try {
-				GregorianCalendar calendar = new GregorianCalendar(Integer.parseInt(new String(t_byte_year, StandardCharsets.US_ASCII)),
-						Integer.parseInt(new String(t_byte_month, StandardCharsets.US_ASCII)) - 1,
-						Integer.parseInt(new String(t_byte_day, StandardCharsets.US_ASCII)));
-				return calendar.getTime();
-			} catch (NumberFormatException e) {
-				// this field may be empty or may have improper value set
-				return null;
-			}
-
+			return readDateField(data, offset);
 
 		case FLOATING_POINT:
 		case NUMERIC:
-			return DBFUtils.readNumericStoredAsText(this.dataInputStream, field.getLength());
+			return DBFUtils.readNumericStoredAsText(data, offset, length);
 
 		case LOGICAL:
-			byte t_logical = this.dataInputStream.readByte();
-			return DBFUtils.toBoolean(t_logical);
+			return DBFUtils.toBoolean(data[offset]);
 		case LONG:
 		case AUTOINCREMENT:
-			int data = DBFUtils.readLittleEndianInt(this.dataInputStream);
-			return data;
+			return readIntegerField(data, offset);
 		case CURRENCY:
-			int c_data = DBFUtils.readLittleEndianInt(this.dataInputStream);
-			String s_data = String.format("%05d", c_data);
-			String x1 = s_data.substring(0, s_data.length() - 4);
-			String x2 = s_data.substring(s_data.length() - 4);
-
-			skip(field.getLength() - 4);
-			return new BigDecimal(x1 + "." + x2);
+			// 64 bits integer with four implied decimals
+			return BigDecimal.valueOf(DBFUtils.readLittleEndianLong(data, offset), 4);
 		case TIMESTAMP:
 		case TIMESTAMP_DBASE7:
-			int days = DBFUtils.readLittleEndianInt(this.dataInputStream);
-			int time = DBFUtils.readLittleEndianInt(this.dataInputStream);
+			int days = DBFUtils.readLittleEndianInt(data, offset);
+			int time = DBFUtils.readLittleEndianInt(data, offset + 4);
 
 			if(days == 0 && time == 0) {
 				return null;
 			}
 			else {
-				Calendar calendar = new GregorianCalendar();
-				calendar.setTimeInMillis(days * MILLISECS_PER_DAY + TIME_MILLIS_1_1_4713_BC + time);
-				calendar.add(Calendar.MILLISECOND, -TimeZone.getDefault().getOffset(calendar.getTimeInMillis()));
-				return calendar.getTime();
+				return new Date(toEpochMillis(days, time));
 			}
 		case MEMO:
 		case GENERAL_OLE:
 		case PICTURE:
 		case BLOB:
-			return readMemoField(field);
+			return readMemoField(field, data, offset);
 		case BINARY:
-			if (field.getLength() == 8) {
-				return  readDoubleField(field);
+			if (length == 8) {
+				return readDoubleField(data, offset);
 			}
 			else {
-				return readMemoField(field);
+				return readMemoField(field, data, offset);
 			}
 		case DOUBLE:
-			return readDoubleField(field);
+			return readDoubleField(data, offset);
 		case NULL_FLAGS:
-			byte [] data1 = new byte[field.getLength()];
-			int readed = dataInputStream.read(data1);
-			if (readed != field.getLength()){
-				throw new EOFException("Unexpected end of file");
-			}
-			return BitSet.valueOf(data1);
+			return BitSet.valueOf(Arrays.copyOfRange(data, offset, offset + length));
 		default:
-			skip(field.getLength());
 			return null;
 		}
 	}
 
-	private Object readDoubleField(DBFField field) throws IOException {
-		byte[] data = new byte[field.getLength()];
-		int bytesReaded = this.dataInputStream.read(data);
-		if (bytesReaded < field.getLength()) {
-			throw new EOFException("Unexpected end of file");
+	/**
+	 * Reads a date stored as YYYYMMDD, as the local midnight of that day.
+	 * Usual dates are computed arithmetically; dates before the gregorian
+	 * calendar, fields with other characters and days with a time zone
+	 * transition near midnight are resolved by GregorianCalendar.
+	 */
+	private Date readDateField(byte[] data, int offset) {
+		for (int i = offset; i < offset + 8; i++) {
+			if (data[i] < '0' || data[i] > '9') {
+				return readDateFieldWithCalendar(data, offset);
+			}
+		}
+		int year = (data[offset] - '0') * 1000 + (data[offset + 1] - '0') * 100 + (data[offset + 2] - '0') * 10 + (data[offset + 3] - '0');
+		int month = (data[offset + 4] - '0') * 10 + (data[offset + 5] - '0');
+		int day = (data[offset + 6] - '0') * 10 + (data[offset + 7] - '0');
+		if (year < FIRST_GREGORIAN_YEAR) {
+			return readDateFieldWithCalendar(data, offset);
+		}
+		// out of range months and days are added, as GregorianCalendar does
+		int months = year * 12 + month - 1;
+		long epochDay = daysFromCivil(months / 12, months % 12 + 1) + day - 1;
+		long localMidnight = epochDay * MILLISECS_PER_DAY;
+		int zoneOffset = this.timeZone.getOffset(localMidnight - MILLISECS_PER_DAY);
+		if (zoneOffset != this.timeZone.getOffset(localMidnight + MILLISECS_PER_DAY)
+				|| zoneOffset != this.timeZone.getOffset(localMidnight - zoneOffset)) {
+			return readDateFieldWithCalendar(data, offset);
+		}
+		return new Date(localMidnight - zoneOffset);
+	}
+
+	/**
+	 * Number of days from 1970-01-01 to the first day of a month, in the proleptic gregorian calendar
+	 */
+	private static long daysFromCivil(int year, int month) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	private Date readDateFieldWithCalendar(byte[] data, int offset) {
+		try {
+			GregorianCalendar calendar = new GregorianCalendar(this.timeZone);
+			calendar.clear();
+			calendar.set(
+					Integer.parseInt(new String(data, offset, 4, StandardCharsets.US_ASCII)),
+					Integer.parseInt(new String(data, offset + 4, 2, StandardCharsets.US_ASCII)) - 1,
+					Integer.parseInt(new String(data, offset + 6, 2, StandardCharsets.US_ASCII)));
+			return calendar.getTime();
+		} catch (NumberFormatException e) {
+			// this field may be empty or may have improper value set
+			return null;
 		}
-		return ByteBuffer.wrap(
-				new byte[]{
-						data[7], data[6], data[5], data[4],
-						data[3], data[2], data[1], data[0]
-				}).getDouble();
 	}
 
-	private Object readMemoField(DBFField field) throws IOException {
+	/**
+	 * Reads the value of a long or autoincrement field: big endian with the
+	 * sign bit flipped in dBase 7 tables, little endian in Visual FoxPro ones
+	 * @param data the buffer
+	 * @param offset position of the field in the buffer
+	 * @return the value of the field
+	 */
+	int readIntegerField(byte[] data, int offset) {
+		if (this.header.isDB7()) {
+			return DBFUtils.readDBase7Int(data, offset);
+		}
+		return DBFUtils.readLittleEndianInt(data, offset);
+	}
+
+	private Object readDoubleField(byte[] data, int offset) {
+		return Double.longBitsToDouble(DBFUtils.readLittleEndianLong(data, offset));
+	}
+
+	private Object readMemoField(DBFField field, byte[] data, int offset) {
 		Number nBlock =  null;
 		if (field.getLength() == 10) {
-			nBlock = DBFUtils.readNumericStoredAsText(this.dataInputStream, field.getLength());
+			nBlock = DBFUtils.readNumericStoredAsText(data, offset, field.getLength());
 		}
 		else {
-			nBlock = DBFUtils.readLittleEndianInt(this.dataInputStream);
+			nBlock = DBFUtils.readLittleEndianInt(data, offset);
 		}
 		if (this.memoFile != null && nBlock != null) {
+			if (this.memoFile.isLazy()) {
+				return new DBFMemoReference(this.memoFile, nBlock.intValue(), field.getType());
+			}
 			return memoFile.readData(nBlock.intValue(), field.getType());
 		}
 		return null;
@@ -538,6 +1016,22 @@ public class DBFReader extends DBFBase implements Closeable {
 	protected DBFHeader getHeader() {
 		return this.header;
 	}
+
+	/**
+	 * Check if deleted rows are returned
+	 * @return true if deleted rows are returned
+	 */
+	protected boolean isShowDeletedRows() {
+		return this.showDeletedRows;
+	}
+
+	/**
+	 * Check if the reader is closed
+	 * @return true if already closed
+	 */
+	protected boolean isClosed() {
+		return this.closed;
+	}
 	/**
 	 * Determine if character fields should be right trimmed (default true)
 	 * @return true if data is right trimmed
@@ -554,12 +1048,52 @@ public class DBFReader extends DBFBase implements Closeable {
 		this.trimRightSpaces = trimRightSpaces;
 	}
 
+	/**
+	 * Determine if {@link #nextRow()} returns rows that are decoded on demand (default false)
+	 * @return true if rows are decoded on demand
+	 */
+	public boolean isLazyRows() {
+		return this.lazyRows;
+	}
+
+	/**
+	 * Determine if {@link #nextRow()} returns rows that are decoded on demand.
+	 * <p>
+	 * A lazy row keeps a copy of the bytes of the record and decodes each
+	 * column the first time it is read, so columns that are never read are
+	 * never decoded. Memo columns must be read before closing the reader.
+	 * </p>
+	 * <p>
+	 * Lazy rows are also the allocation-free path for primitive values: their
+	 * {@link DBFRow#getInt(int)}, {@link DBFRow#getLong(int)} and
+	 * {@link DBFRow#getDouble(int)} parse numeric and floating point columns
+	 * from the bytes of the record without creating a BigDecimal, and dates
+	 * and timestamps read with {@link DBFRow#getDateAsInt(int)} and
+	 * {@link DBFRow#getTimestampMillis(int)} do not create a Date. Eager rows
+	 * and {@link #nextRecord()} decode every column to its object first.
+	 * </p>
+	 * @param lazyRows if rows should be decoded on demand
+	 */
+	public void setLazyRows(boolean lazyRows) {
+		this.lazyRows = lazyRows;
+	}
+
 	/**
 	 * Sets the memo file (DBT or FPT) where memo fields will be readed.
 	 * If no file is provided, then this fields will be null.
 	 * @param memoFile the file containing the memo data
 	 */
 	public void setMemoFile(File memoFile) {
+		setMemoFile(memoFile, new DBFMemoOptions());
+	}
+
+	/**
+	 * Sets the memo file (DBT or FPT) where memo fields will be readed, with
+	 * the given options.
+	 * @param memoFile the file containing the memo data
+	 * @param options options used to read the memo file
+	 */
+	public void setMemoFile(File memoFile, DBFMemoOptions options) {
 		if (this.memoFile != null) {
 			throw new IllegalStateException("Memo file is already setted");
 		}
@@ -569,12 +1103,21 @@ public class DBFReader extends DBFBase implements Closeable {
 		if (!memoFile.canRead()) {
 			throw new DBFException("Cannot read Memo file " + memoFile.getName());
 		}
-		this.memoFile = new DBFMemoFile(memoFile, this.getCharset());
+		this.memoFile = new DBFMemoFile(memoFile, this.getCharset(), options);
+	}
+
+	/**
+	 * Gets the cache of memo values
+	 * @return the cache, or null if there is no memo file or it is read without cache
+	 */
+	public DBFMemoCache getMemoCache() {
+		return this.memoFile != null ? this.memoFile.getCache() : null;
 	}
 
 	@Override
 	public void close() {
 		this.closed = true;
+		DBFUtils.close(this.memoFile);
 		DBFUtils.close(this.dataInputStream);
 	}
 	
@@ -0,0 +1,329 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Encodes records into a reused byte array of the length of a record, so a
+ * whole record can be written with a single call.
+ * <p>
+ * Values must have been validated by {@link DBFWriter#addRecord(Object[])},
+ * memo values are the block numbers in the memo file. Long and
+ * autoincrement fields of dBase 7 tables are written big endian with the
+ * sign bit flipped, as dBase 7 does; Visual FoxPro tables use little endian
+ * integers. This class is not thread safe.
+ * </p>
+ */
+class DBFRecordEncoder {
+
+	private final DBFField[] fields;
+	private final Charset charset;
+	private final byte[] record;
+	private final int[] offsets;
+	private final boolean dbase7;
+	private static final long MILLISECS_PER_DAY = 24*60*60*1000;
+	private static final long TIME_MILLIS_1_1_4713_BC = -210866803200000L;
+
+	private final GregorianCalendar calendar = new GregorianCalendar();
+	private final TimeZone timeZone = TimeZone.getDefault();
+	private final CharsetEncoder textEncoder;
+	private final boolean asciiCompatible;
+	private final ByteBuffer recordBuffer;
+
+	DBFRecordEncoder(DBFField[] fields, Charset charset) {
+		this(fields, charset, false);
+	}
+
+	/**
+	 * @param fields the fields of the table
+	 * @param charset the charset of the text fields
+	 * @param dbase7 true if the table is a dBase 7 table
+	 */
+	DBFRecordEncoder(DBFField[] fields, Charset charset, boolean dbase7) {
+		this.fields = fields;
+		this.charset = charset;
+		this.dbase7 = dbase7;
+		int recordLength = 1;
+		this.offsets = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			this.offsets[i] = recordLength;
+			recordLength += fields[i].getLength();
+		}
+		this.record = new byte[recordLength];
+		this.recordBuffer = ByteBuffer.wrap(this.record);
+		this.textEncoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.asciiCompatible = isAsciiCompatible(charset);
+	}
+
+	/**
+	 * Gets the length of the encoded records
+	 * @return the length of a record, including the deleted flag
+	 */
+	int getRecordLength() {
+		return this.record.length;
+	}
+
+	/**
+	 * Encodes a record. The returned array is reused by the next call.
+	 * @param values the values of the record
+	 * @return the record, with the deleted flag
+	 */
+	byte[] encode(Object[] values) {
+		this.record[0] = ' ';
+		int offset = 1;
+		for (int j = 0; j < this.fields.length; j++) {
+			encodeField(this.fields[j], values[j], offset);
+			offset += this.fields[j].getLength();
+		}
+		return this.record;
+	}
+
+	/**
+	 * Gets the position of a field in the record
+	 * @param index the index of the field
+	 * @return the offset of the field from the start of the record
+	 */
+	int getFieldOffset(int index) {
+		return this.offsets[index];
+	}
+
+	/**
+	 * Encodes the value of one field, at its position in the record. The
+	 * rest of the record is not modified. The returned array is reused by
+	 * the next call.
+	 * @param index the index of the field
+	 * @param value the value of the field
+	 * @return the record
+	 */
+	byte[] encodeField(int index, Object value) {
+		encodeField(this.fields[index], value, this.offsets[index]);
+		return this.record;
+	}
+
+	private void encodeField(DBFField field, Object value, int offset) {
+		int length = field.getLength();
+		switch (field.getType()) {
+
+		case CHARACTER:
+			putText(value != null ? value.toString() : "", offset, length);
+			break;
+
+		case DATE:
+			if (value != null) {
+				this.calendar.setTime((Date) value);
+				putDigits(this.calendar.get(Calendar.YEAR), offset, 4);
+				putDigits(this.calendar.get(Calendar.MONTH) + 1, offset + 4, 2);
+				putDigits(this.calendar.get(Calendar.DAY_OF_MONTH), offset + 6, 2);
+			}
+			else {
+				Arrays.fill(this.record, offset, offset + 8, (byte) ' ');
+			}
+			break;
+
+		case NUMERIC:
+		case FLOATING_POINT:
+			if (value != null) {
+				if (!DBFUtils.formatFixedPoint((Number) value, length, field.getDecimalCount(), this.record, offset)) {
+					put(DBFUtils.doubleFormating((Number) value, this.charset, length, field.getDecimalCount()), offset);
+				}
+			}
+			else {
+				Arrays.fill(this.record, offset, offset + length, (byte) ' ');
+			}
+			break;
+
+		case LOGICAL:
+			if (value instanceof Boolean) {
+				this.record[offset] = ((Boolean) value) ? (byte) 'T' : (byte) 'F';
+			}
+			else {
+				this.record[offset] = (byte) '?';
+			}
+			break;
+
+		case LONG:
+		case AUTOINCREMENT:
+			if (this.dbase7) {
+				putDBase7Int(value != null ? ((Number) value).intValue() : 0, offset);
+			}
+			else {
+				putLittleEndianInt(value != null ? ((Number) value).intValue() : 0, offset);
+			}
+			break;
+
+		case DOUBLE:
+			putLittleEndianLong(value != null ? Double.doubleToLongBits(((Number) value).doubleValue()) : 0L, offset);
+			break;
+
+		case CURRENCY:
+			putLittleEndianLong(value != null ? toCurrency((Number) value) : 0L, offset);
+			break;
+
+		case TIMESTAMP:
+		case TIMESTAMP_DBASE7:
+			if (value != null) {
+				// julian day and milliseconds of the day, in local time
+				long millis = ((Date) value).getTime();
+				long local = millis + this.timeZone.getOffset(millis) - TIME_MILLIS_1_1_4713_BC;
+				long days = local / MILLISECS_PER_DAY;
+				putLittleEndianInt((int) days, offset);
+				putLittleEndianInt((int) (local - days * MILLISECS_PER_DAY), offset + 4);
+			}
+			else {
+				Arrays.fill(this.record, offset, offset + 8, (byte) 0);
+			}
+			break;
+
+		case MEMO:
+		case BINARY:
+		case BLOB:
+		case GENERAL_OLE:
+		case PICTURE:
+			if (length == 10) {
+				String block = value != null ? value.toString() : "";
+				put(DBFUtils.textPadding(block, StandardCharsets.US_ASCII, 10, DBFAlignment.RIGHT, (byte) ' '), offset);
+			}
+			else {
+				int block = value != null ? (Integer) value : 0;
+				putLittleEndianInt(block, offset);
+			}
+			break;
+
+		default:
+			throw new DBFException("Unknown field type " + field.getType());
+		}
+	}
+
+	/**
+	 * Writes a text left aligned and padded with spaces. Characters are
+	 * encoded directly into the record, ASCII characters without the encoder
+	 * if the charset allows it. Text that doesn't fit is truncated at the
+	 * last whole character that fits, as textPadding does.
+	 */
+	private void putText(String text, int offset, int length) {
+		int end = offset + length;
+		int i = 0;
+		if (this.asciiCompatible) {
+			int max = Math.min(text.length(), length);
+			while (i < max) {
+				char c = text.charAt(i);
+				if (c >= 0x80) {
+					break;
+				}
+				this.record[offset + i] = (byte) c;
+				i++;
+			}
+		}
+		int position = offset + i;
+		if (i < text.length() && position < end) {
+			this.textEncoder.reset();
+			this.recordBuffer.limit(end).position(position);
+			this.textEncoder.encode(CharBuffer.wrap(text, i, text.length()), this.recordBuffer, true);
+			this.textEncoder.flush(this.recordBuffer);
+			position = this.recordBuffer.position();
+		}
+		Arrays.fill(this.record, position, end, (byte) ' ');
+	}
+
+	private static boolean isAsciiCompatible(Charset charset) {
+		if (!charset.canEncode()) {
+			return false;
+		}
+		byte[] ascii = new byte[0x80];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (byte) i;
+		}
+		return Arrays.equals(ascii, new String(ascii, StandardCharsets.ISO_8859_1).getBytes(charset));
+	}
+
+	private void put(byte[] data, int offset) {
+		System.arraycopy(data, 0, this.record, offset, data.length);
+	}
+
+	/**
+	 * Writes a positive number as text, padded with zeros
+	 */
+	private void putDigits(int value, int offset, int length) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			this.record[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private void putLittleEndianInt(int value, int offset) {
+		this.record[offset] = (byte) value;
+		this.record[offset + 1] = (byte) (value >>> 8);
+		this.record[offset + 2] = (byte) (value >>> 16);
+		this.record[offset + 3] = (byte) (value >>> 24);
+	}
+
+	private void putDBase7Int(int value, int offset) {
+		int flipped = value ^ Integer.MIN_VALUE;
+		this.record[offset] = (byte) (flipped >>> 24);
+		this.record[offset + 1] = (byte) (flipped >>> 16);
+		this.record[offset + 2] = (byte) (flipped >>> 8);
+		this.record[offset + 3] = (byte) flipped;
+	}
+
+	private void putLittleEndianLong(long value, int offset) {
+		putLittleEndianInt((int) value, offset);
+		putLittleEndianInt((int) (value >>> 32), offset + 4);
+	}
+
+	/**
+	 * Converts a number to currency, an integer with four implied decimals
+	 */
+	static long toCurrency(Number value) {
+		BigDecimal decimal;
+		if (value instanceof BigDecimal) {
+			decimal = (BigDecimal) value;
+		}
+		else if (value instanceof BigInteger) {
+			decimal = new BigDecimal((BigInteger) value);
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			decimal = BigDecimal.valueOf(value.doubleValue());
+		}
+		else {
+			decimal = BigDecimal.valueOf(value.longValue());
+		}
+		try {
+			return decimal.setScale(4, RoundingMode.HALF_EVEN).movePointRight(4).longValueExact();
+		}
+		catch (ArithmeticException e) {
+			throw new DBFException("Value out of range for currency: " + value, e);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+/**
+ * Position of every field inside a record, precomputed from the field
+ * definitions, so fields can be accessed directly in a record buffer.
+ *
+ * This class is for internal usage for JavaDBF.
+ */
+final class DBFRecordLayout {
+
+	private final DBFField[] fields;
+	private final int[] offsets;
+	private final int[] nullFlagBits;
+	private final int[] varLengthBits;
+	private int nullFlagsOffset = -1;
+	private int nullFlagsLength = 0;
+
+	DBFRecordLayout(DBFField[] fields) {
+		this.fields = fields;
+		this.offsets = new int[fields.length];
+		this.nullFlagBits = new int[fields.length];
+		this.varLengthBits = new int[fields.length];
+
+		// first byte of each record is the deleted flag
+		int offset = 1;
+		int currentBit = -1;
+		for (int i = 0; i < fields.length; i++) {
+			DBFField field = fields[i];
+			this.offsets[i] = offset;
+			offset += field.getLength();
+			if (field.isSystem() && field.getType() == DBFDataType.NULL_FLAGS) {
+				this.nullFlagsOffset = this.offsets[i];
+				this.nullFlagsLength = field.getLength();
+			}
+			this.nullFlagBits[i] = -1;
+			this.varLengthBits[i] = -1;
+			if (field.isNullable()) {
+				currentBit++;
+				this.nullFlagBits[i] = currentBit;
+			}
+			if (field.getType() == DBFDataType.VARBINARY || field.getType() == DBFDataType.VARCHAR) {
+				currentBit++;
+				this.varLengthBits[i] = currentBit;
+			}
+		}
+	}
+
+	int getFieldCount() {
+		return this.fields.length;
+	}
+
+	DBFField getField(int fieldIndex) {
+		return this.fields[fieldIndex];
+	}
+
+	/**
+	 * Gets the offset of a field, relative to the start of the record
+	 * @param fieldIndex index of the field
+	 * @return the offset of the field in the record
+	 */
+	int getOffset(int fieldIndex) {
+		return this.offsets[fieldIndex];
+	}
+
+	/**
+	 * Checks the null flags of the record (visual foxpro) for a field
+	 * @param fieldIndex index of the field
+	 * @param data the buffer with the record
+	 * @param recordOffset offset of the record in the buffer
+	 * @return true if the field is marked as null
+	 */
+	boolean isNull(int fieldIndex, byte[] data, int recordOffset) {
+		return isFlagSet(this.nullFlagBits[fieldIndex], data, recordOffset);
+	}
+
+	/**
+	 * Checks if the field is a VARCHAR or VARBINARY with it's length stored
+	 * in the null flags
+	 * @param fieldIndex index of the field
+	 * @return true if the length is variable
+	 */
+	boolean hasVariableLength(int fieldIndex) {
+		return this.varLengthBits[fieldIndex] >= 0 && this.nullFlagsOffset >= 0;
+	}
+
+	/**
+	 * Gets the used length of a VARCHAR or VARBINARY field
+	 * @param fieldIndex index of the field
+	 * @param data the buffer with the record
+	 * @param recordOffset offset of the record in the buffer
+	 * @return the number of bytes used in this record
+	 */
+	int getVariableLength(int fieldIndex, byte[] data, int recordOffset) {
+		int length = this.fields[fieldIndex].getLength();
+		if (!isFlagSet(this.varLengthBits[fieldIndex], data, recordOffset)) {
+			// Data is not full, size is stored in the last byte
+			return Math.min(length, data[recordOffset + this.offsets[fieldIndex] + length - 1] & 0xFF);
+		}
+		return length;
+	}
+
+	private boolean isFlagSet(int bit, byte[] data, int recordOffset) {
+		if (bit < 0 || this.nullFlagsOffset < 0 || (bit >> 3) >= this.nullFlagsLength) {
+			return false;
+		}
+		return (data[recordOffset + this.nullFlagsOffset + (bit >> 3)] & (1 << (bit & 7))) != 0;
+	}
+}
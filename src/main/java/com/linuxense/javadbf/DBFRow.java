@@ -20,8 +20,10 @@ package com.linuxense.javadbf;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TimeZone;
 
 /**
  * Data containdes in a row of the DBF file.
@@ -31,15 +33,25 @@ import java.util.Objects;
  */
 public class DBFRow {
 
+	private static final long MILLISECS_PER_DAY = 24*60*60*1000;
+	/** days from 1970-01-01 to 1583-01-01, the first year fully in the gregorian calendar */
+	private static final long FIRST_GREGORIAN_EPOCH_DAY = -141349;
+
 	private Object[] data;
 	private Map<String, Integer> mapcolumnNames;
 	private DBFField[] fields;
+	private TimeZone timeZone;
 
 	protected DBFRow(Object[] data, Map<String, Integer> mapcolumnNames, DBFField[] fields) {
+		this(data, mapcolumnNames, fields, null);
+	}
+
+	DBFRow(Object[] data, Map<String, Integer> mapcolumnNames, DBFField[] fields, TimeZone timeZone) {
 		super();
 		this.data = data;
 		this.mapcolumnNames = mapcolumnNames;
 		this.fields = fields;
+		this.timeZone = timeZone;
 	}
 
 	private int getColumnIndex(String columnName) {
@@ -60,7 +72,8 @@ public class DBFRow {
 	 * @return true if the record is deleted
 	 */
 	public boolean isDeleted() {
-		return "deleted".equals(this.fields[0].getName()) && getBoolean("deleted");
+		Integer index = this.mapcolumnNames.get("deleted");
+		return index != null && "deleted".equals(this.fields[index].getName()) && getBoolean(index);
 	}
 
 	/**
@@ -82,7 +95,7 @@ public class DBFRow {
 	 * @return the original value unconverted
 	 */
 	public Object getObject(int columnIndex) {
-		return data[columnIndex];
+		return this.data[columnIndex];
 	}
 
 	/**
@@ -104,16 +117,19 @@ public class DBFRow {
 	 * @return the value converted to String
 	 */
 	public String getString(int columnIndex) {
-		if (columnIndex < 0 || columnIndex >= data.length) {
-			throw new IllegalArgumentException("Invalid index field: (" + columnIndex+"). Valid range is 0 to " + (data.length - 1));			
+		if (columnIndex < 0 || columnIndex >= this.data.length) {
+			throw new IllegalArgumentException("Invalid index field: (" + columnIndex+"). Valid range is 0 to " + (this.data.length - 1));			
 		}
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return null;
 		}
 		if (fieldValue instanceof String) {
 			return (String) fieldValue;
 		}
+		if (fieldValue instanceof DBFMemoReference) {
+			return ((DBFMemoReference) fieldValue).getString();
+		}
 		return fieldValue.toString();
 	}
 
@@ -136,7 +152,7 @@ public class DBFRow {
 	 * @return the data as BigDecimal
 	 */
 	public BigDecimal getBigDecimal(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return null;
 		}
@@ -166,7 +182,7 @@ public class DBFRow {
 	 * @return the data as Boolean
 	 */
 	public boolean getBoolean(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return Boolean.FALSE;
 		}
@@ -197,13 +213,16 @@ public class DBFRow {
 	 * @return the data as Boolean
 	 */
 	public byte[] getBytes(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return null;
 		}
 		if (fieldValue instanceof byte[]) {
 			return (byte[]) fieldValue;
 		}
+		if (fieldValue instanceof DBFMemoReference) {
+			return ((DBFMemoReference) fieldValue).getBytes();
+		}
 		throw new DBFException("Unsupported type for byte[] at column:" + columnIndex + " "
 				+ fieldValue.getClass().getCanonicalName());
 	}
@@ -228,7 +247,7 @@ public class DBFRow {
 	 * @return the data as Date
 	 */
 	public Date getDate(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return null;
 		}
@@ -239,6 +258,90 @@ public class DBFRow {
 				"Unsupported type for Date at column:" + columnIndex + " " + fieldValue.getClass().getCanonicalName());
 	}
 
+	/**
+	 * Reads a date as an int in the form yyyyMMdd (for example 20230115)
+	 * 
+	 * @param columnName
+	 *            columnName
+	 * @return the date as an int, 0 if null
+	 */
+	public int getDateAsInt(String columnName) {
+		return getDateAsInt(getColumnIndex(columnName));
+	}
+
+	/**
+	 * Reads a date as an int in the form yyyyMMdd (for example 20230115).
+	 * Rows decoded on demand (see {@link DBFReader#setLazyRows(boolean)})
+	 * read date fields directly from the record, without creating a Date.
+	 * 
+	 * @param columnIndex
+	 *            columnIndex
+	 * @return the date as an int, 0 if null
+	 */
+	public int getDateAsInt(int columnIndex) {
+		return toDateAsInt(getDate(columnIndex), this.timeZone != null ? this.timeZone : TimeZone.getDefault());
+	}
+
+	/**
+	 * Reads a timestamp as milliseconds since 1970-01-01T00:00:00Z, the value
+	 * of {@link Date#getTime()}
+	 * 
+	 * @param columnName
+	 *            columnName
+	 * @return the timestamp as milliseconds, 0 if null
+	 */
+	public long getTimestampMillis(String columnName) {
+		return getTimestampMillis(getColumnIndex(columnName));
+	}
+
+	/**
+	 * Reads a timestamp as milliseconds since 1970-01-01T00:00:00Z, the value
+	 * of {@link Date#getTime()}. As the other primitive getters it returns 0
+	 * for null; use {@link #getDate(int)} to tell null from the epoch.
+	 * Rows decoded on demand (see {@link DBFReader#setLazyRows(boolean)})
+	 * read the julian day and the milliseconds of timestamp fields directly
+	 * from the record, without creating a Date.
+	 * 
+	 * @param columnIndex
+	 *            columnIndex
+	 * @return the timestamp as milliseconds, 0 if null
+	 */
+	public long getTimestampMillis(int columnIndex) {
+		Date date = getDate(columnIndex);
+		return date != null ? date.getTime() : 0;
+	}
+
+	/**
+	 * Converts a date to an int in the form yyyyMMdd, in the time zone used
+	 * to read it. Dates before the gregorian calendar are resolved by
+	 * GregorianCalendar, as DBFReader does.
+	 */
+	static int toDateAsInt(Date date, TimeZone timeZone) {
+		if (date == null) {
+			return 0;
+		}
+		long millis = date.getTime();
+		long local = millis + timeZone.getOffset(millis);
+		long epochDay = local >= 0 ? local / MILLISECS_PER_DAY : (local + 1) / MILLISECS_PER_DAY - 1;
+		if (epochDay < FIRST_GREGORIAN_EPOCH_DAY) {
+			GregorianCalendar calendar = new GregorianCalendar(timeZone);
+			calendar.setTime(date);
+			return calendar.get(GregorianCalendar.YEAR) * 10000 + (calendar.get(GregorianCalendar.MONTH) + 1) * 100
+					+ calendar.get(GregorianCalendar.DAY_OF_MONTH);
+		}
+		// civil date from days since the epoch, in the proleptic gregorian calendar
+		long z = epochDay + 719468;
+		long era = z / 146097;
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (era * 400) + yearOfEra + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
 	/**
 	 * Reads the data as Double
 	 * 
@@ -252,14 +355,17 @@ public class DBFRow {
 	}
 
 	/**
-	 * Reads the data as Double
+	 * Reads the data as Double.
+	 * Rows decoded on demand (see {@link DBFReader#setLazyRows(boolean)})
+	 * parse numeric fields directly from the record; other rows convert the
+	 * BigDecimal decoded by the reader.
 	 * 
 	 * @param columnIndex
 	 *            columnIndex
 	 * @return the data as Double
 	 */
 	public double getDouble(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return 0.0;
 		}
@@ -289,7 +395,7 @@ public class DBFRow {
 	 * @return the data as Float
 	 */
 	public float getFloat(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return 0.0f;
 		}
@@ -312,14 +418,17 @@ public class DBFRow {
 	}
 
 	/**
-	 * Reads the data as int
+	 * Reads the data as int.
+	 * Rows decoded on demand (see {@link DBFReader#setLazyRows(boolean)})
+	 * parse numeric fields directly from the record; other rows convert the
+	 * BigDecimal decoded by the reader.
 	 * 
 	 * @param columnIndex
 	 *            columnIndex
 	 * @return the data as int
 	 */
 	public int getInt(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return 0;
 		}
@@ -342,14 +451,17 @@ public class DBFRow {
 	}
 
 	/**
-	 * Reads the data as long
+	 * Reads the data as long.
+	 * Rows decoded on demand (see {@link DBFReader#setLazyRows(boolean)})
+	 * parse numeric fields directly from the record; other rows convert the
+	 * BigDecimal decoded by the reader.
 	 * 
 	 * @param columnIndex
 	 *            columnIndex
 	 * @return the data as long
 	 */
 	public long getLong(int columnIndex) {
-		Object fieldValue = data[columnIndex];
+		Object fieldValue = getObject(columnIndex);
 		if (fieldValue == null) {
 			return 0;
 		}
@@ -0,0 +1,158 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over a range of records of a DBF file that can be split in two
+ * halves, to scan a file in parallel (for example with a ForkJoinPool).
+ * <p>
+ * It follows the contract of java.util.Spliterator: {@link #trySplit()}
+ * returns a new instance covering the first half of the remaining records and
+ * this instance keeps the second half. Records are read with positional reads
+ * from the file channel, so different instances obtained from the same
+ * {@link DBFRandomAccessReader} can be used at the same time from different
+ * threads. Each instance must be used from only one thread.
+ * </p>
+ * <p>
+ * Only {@link DBFRandomAccessReader} creates instances, as splitting needs
+ * positional reads from a file: a {@link DBFReader} reads records in order
+ * from a stream.
+ * </p>
+ * <p>
+ * Deleted records are skipped unless deleted rows are shown, and records
+ * that doesn't match the filter of the reader are skipped, so
+ * {@link #estimateSize()} is an upper bound of the number of rows returned.
+ * </p>
+ */
+public class DBFRowSpliterator implements Iterator<DBFRow> {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final DBFReader reader;
+	private final FileChannel channel;
+	private final long dataStart;
+	private final int recordLength;
+	private int current;
+	private int end;
+
+	private ByteBuffer buffer;
+	private int bufferFirstRecord;
+	private int bufferRecords;
+	private DBFRow next;
+
+	DBFRowSpliterator(DBFReader reader, FileChannel channel, long dataStart, int recordLength, int fromIndex, int toIndex) {
+		this.reader = reader;
+		this.channel = channel;
+		this.dataStart = dataStart;
+		this.recordLength = recordLength;
+		this.current = fromIndex;
+		this.end = toIndex;
+	}
+
+	/**
+	 * Splits the remaining records in two halves.
+	 * @return a new DBFRowSpliterator over the first half, or null if there
+	 *          are less than two records left.
+	 */
+	public DBFRowSpliterator trySplit() {
+		if (this.next != null) {
+			return null;
+		}
+		int mid = (this.current + this.end) >>> 1;
+		if (mid <= this.current) {
+			return null;
+		}
+		DBFRowSpliterator prefix = new DBFRowSpliterator(this.reader, this.channel, this.dataStart,
+				this.recordLength, this.current, mid);
+		this.current = mid;
+		return prefix;
+	}
+
+	/**
+	 * Returns the number of records not yet read, including deleted records.
+	 * @return number of remaining records
+	 */
+	public long estimateSize() {
+		return (long) this.end - this.current + (this.next != null ? 1 : 0);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (this.next == null && this.current < this.end) {
+			int recordIndex = this.current++;
+			int offset = positionRecord(recordIndex);
+			byte[] data = this.buffer.array();
+			if (this.reader.isAccepted(data, offset)) {
+				this.next = this.reader.decodeRow(data, offset);
+			}
+		}
+		return this.next != null;
+	}
+
+	@Override
+	public DBFRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		DBFRow row = this.next;
+		this.next = null;
+		return row;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("DBFRowSpliterator is read only");
+	}
+
+	private int positionRecord(int recordIndex) {
+		if (this.buffer == null || recordIndex < this.bufferFirstRecord || recordIndex >= this.bufferFirstRecord + this.bufferRecords) {
+			fillBuffer(recordIndex);
+		}
+		return (recordIndex - this.bufferFirstRecord) * this.recordLength;
+	}
+
+	private void fillBuffer(int firstRecord) {
+		int records = Math.min(Math.max(1, CHUNK_SIZE / this.recordLength), this.end - firstRecord);
+		if (this.buffer == null || this.buffer.capacity() < records * this.recordLength) {
+			this.buffer = ByteBuffer.allocate(records * this.recordLength);
+		}
+		this.buffer.clear();
+		this.buffer.limit(records * this.recordLength);
+		long position = this.dataStart + (long) firstRecord * this.recordLength;
+		try {
+			while (this.buffer.hasRemaining()) {
+				int readed = this.channel.read(this.buffer, position + this.buffer.position());
+				if (readed < 0) {
+					throw new DBFException("Unexpected end of file");
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+		this.bufferFirstRecord = firstRecord;
+		this.bufferRecords = records;
+	}
+}
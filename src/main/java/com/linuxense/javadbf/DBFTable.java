@@ -0,0 +1,787 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Handle to an existing DBF file that allows to modify records in place.
+ * <p>
+ * Records and fields are overwritten at their position in the file with
+ * positional writes, and records are deleted or undeleted writing only their
+ * deletion flag, so the cost of a change doesn't depend on the size of the
+ * file. The date of last update in the header is set on the first change.
+ * </p>
+ * <p>
+ * Values are the same accepted by {@link DBFWriter#addRecord(Object[])}, one
+ * for each field of the file, system fields included. Memo fields and fields
+ * of types that can not be written keep their current contents; their values
+ * must be null.
+ * </p>
+ * <p>
+ * Records matching a {@link DBFPredicate} can be deleted or updated in bulk
+ * with {@link #deleteWhere(DBFPredicate)} and
+ * {@link #updateWhere(DBFPredicate, String, Object)}. The data region of the
+ * file is mapped read-write, the predicate is evaluated on the raw bytes of
+ * the records and only the deletion flag or the bytes of the field are
+ * written, without decoding or encoding the records.
+ * </p>
+ * <p>
+ * Deleted records are removed with {@link #pack()}, which copies the live
+ * records to a new file that replaces the original one.
+ * </p>
+ * <p>
+ * Methods of this class can be called from several threads.
+ * </p>
+ */
+public class DBFTable implements Closeable {
+
+	private static final byte DELETED = '*';
+	private static final byte NOT_DELETED = ' ';
+	private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private final DBFHeader header;
+	private final DBFRecordEncoder encoder;
+	private final int recordLength;
+	private int recordCount;
+	private boolean modified = false;
+	private boolean closed = false;
+	private DBFReader predicateReader = null;
+
+	/**
+	 * Opens a DBF file to modify its records.
+	 * Tries to detect charset from file, if failed uses default charset ISO-8859-1
+	 * @param file the DBF file
+	 */
+	public DBFTable(File file) {
+		this(file, null);
+	}
+
+	/**
+	 * Opens a DBF file to modify its records.
+	 * @param file the DBF file
+	 * @param charset charset used to encode field contents. If null, then is autedetected from dbf file
+	 */
+	public DBFTable(File file, Charset charset) {
+		this.file = file;
+		try {
+			this.raf = new RandomAccessFile(file, "rw");
+		}
+		catch (FileNotFoundException e) {
+			throw new DBFException("Specified file is not found. " + e.getMessage(), e);
+		}
+		try {
+			this.channel = this.raf.getChannel();
+			this.header = new DBFHeader();
+			this.header.read(this.raf, charset, false);
+			this.encoder = new DBFRecordEncoder(this.header.fieldArray, this.header.getUsedCharset(), this.header.isDB7());
+			this.recordLength = this.header.recordLength;
+			if (this.encoder.getRecordLength() > this.recordLength) {
+				throw new DBFException("Invalid record length " + this.recordLength);
+			}
+			this.recordCount = this.header.numberOfRecords;
+		}
+		catch (IOException | RuntimeException e) {
+			DBFUtils.close(this.raf);
+			if (e instanceof DBFException) {
+				throw (DBFException) e;
+			}
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the charset used to encode field contents
+	 * @return the charset
+	 */
+	public Charset getCharset() {
+		return this.header.getUsedCharset();
+	}
+
+	/**
+	 * Gets the number of records in the file, as stored in the header when
+	 * the file was opened
+	 * @return number of records
+	 */
+	public synchronized int getRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * Returns the number of fields in the file, system fields included
+	 * @return number of fields
+	 */
+	public int getFieldCount() {
+		return this.header.fieldArray.length;
+	}
+
+	/**
+	 * Returns a field of the file
+	 * @param index index of the field, system fields included
+	 * @return the field
+	 */
+	public DBFField getField(int index) {
+		return new DBFField(this.header.fieldArray[index]);
+	}
+
+	/**
+	 * Overwrites a record. The deletion flag of the record is kept.
+	 * @param index index of the record, first record is zero
+	 * @param values values of the fields
+	 */
+	public synchronized void updateRecord(int index, Object[] values) {
+		checkOpen();
+		checkIndex(index);
+		if (values == null) {
+			throw new DBFException("Null cannot be added as row");
+		}
+		if (values.length != this.header.fieldArray.length) {
+			throw new DBFException("Invalid record. Invalid number of fields in row");
+		}
+		for (int i = 0; i < values.length; i++) {
+			checkFieldValue(i, values[i]);
+		}
+		try {
+			long position = getRecordPosition(index);
+			ByteBuffer current = ByteBuffer.allocate(this.encoder.getRecordLength());
+			readFully(current, position);
+			byte[] data = current.array();
+			for (int i = 0; i < values.length; i++) {
+				if (isWritable(i)) {
+					int offset = this.encoder.getFieldOffset(i);
+					byte[] record = this.encoder.encodeField(i, values[i]);
+					System.arraycopy(record, offset, data, offset, this.header.fieldArray[i].getLength());
+				}
+			}
+			current.clear();
+			writeFully(current, position);
+			updateDate();
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Overwrites the value of a field of a record, leaving the rest of the
+	 * record untouched
+	 * @param index index of the record, first record is zero
+	 * @param fieldIndex index of the field, system fields included
+	 * @param value the value of the field
+	 */
+	public synchronized void updateField(int index, int fieldIndex, Object value) {
+		checkOpen();
+		checkIndex(index);
+		if (fieldIndex < 0 || fieldIndex >= this.header.fieldArray.length) {
+			throw new DBFException("Invalid field index: " + fieldIndex);
+		}
+		checkFieldValue(fieldIndex, value);
+		if (!isWritable(fieldIndex)) {
+			return;
+		}
+		try {
+			int offset = this.encoder.getFieldOffset(fieldIndex);
+			byte[] record = this.encoder.encodeField(fieldIndex, value);
+			ByteBuffer buffer = ByteBuffer.wrap(record, offset, this.header.fieldArray[fieldIndex].getLength());
+			writeFully(buffer, getRecordPosition(index) + offset);
+			updateDate();
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Overwrites the value of a field of a record, leaving the rest of the
+	 * record untouched
+	 * @param index index of the record, first record is zero
+	 * @param fieldName name of the field
+	 * @param value the value of the field
+	 */
+	public void updateField(int index, String fieldName, Object value) {
+		updateField(index, getFieldIndex(fieldName), value);
+	}
+
+	/**
+	 * Marks a record as deleted
+	 * @param index index of the record, first record is zero
+	 */
+	public void markDeleted(int index) {
+		writeDeletedFlag(index, DELETED);
+	}
+
+	/**
+	 * Marks a deleted record as not deleted
+	 * @param index index of the record, first record is zero
+	 */
+	public void undelete(int index) {
+		writeDeletedFlag(index, NOT_DELETED);
+	}
+
+	/**
+	 * Checks if a record is marked as deleted
+	 * @param index index of the record, first record is zero
+	 * @return true if the record is deleted
+	 */
+	public synchronized boolean isDeleted(int index) {
+		checkOpen();
+		checkIndex(index);
+		try {
+			ByteBuffer flag = ByteBuffer.allocate(1);
+			readFully(flag, getRecordPosition(index));
+			return flag.get(0) == DELETED;
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Marks as deleted the records that match a predicate. Records already
+	 * deleted are not evaluated.
+	 * @param predicate the condition, null for all the records
+	 * @return the number of records deleted
+	 */
+	public int deleteWhere(DBFPredicate predicate) {
+		return mutate(predicate, 0, new byte[] {DELETED});
+	}
+
+	/**
+	 * Sets the value of a field in the records that match a predicate.
+	 * Deleted records are not evaluated. The value is encoded once and its
+	 * bytes are written in the matching records.
+	 * @param predicate the condition, null for all the records
+	 * @param fieldName name of the field
+	 * @param value the value of the field
+	 * @return the number of records updated
+	 */
+	public int updateWhere(DBFPredicate predicate, String fieldName, Object value) {
+		int fieldIndex = getFieldIndex(fieldName);
+		if (!isWritable(fieldIndex)) {
+			throw new DBFException("Field " + fieldIndex + " can not be updated");
+		}
+		byte[] bytes;
+		int offset;
+		synchronized (this) {
+			checkFieldValue(fieldIndex, value);
+			offset = this.encoder.getFieldOffset(fieldIndex);
+			byte[] record = this.encoder.encodeField(fieldIndex, value);
+			bytes = Arrays.copyOfRange(record, offset, offset + this.header.fieldArray[fieldIndex].getLength());
+		}
+		return mutate(predicate, offset, bytes);
+	}
+
+	/**
+	 * Removes the deleted records. Runs of contiguous live records are copied
+	 * to a temporary file in the same directory with
+	 * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+	 * without decoding them, and the temporary file replaces the original
+	 * one with an atomic rename. The memo file, if any, is left untouched.
+	 * @return the number of bytes reclaimed
+	 */
+	public long pack() {
+		return pack(null);
+	}
+
+	/**
+	 * Removes the deleted records, as {@link #pack()}, and compacts the memo
+	 * file: the values referenced by the live records are copied to a new
+	 * memo file that replaces the original one, and the records are updated
+	 * with their new blocks. Values of DBT files are written with the dBase
+	 * IV layout. The memo file is replaced before the DBF file, and the
+	 * original memo file is kept aside until the DBF file is replaced, so
+	 * both files are restored if the DBF file can not be replaced.
+	 * @param memoFile the memo file of the table (DBT or FPT), or null to
+	 *          leave the memo file untouched
+	 * @return the number of bytes reclaimed in the DBF and the memo files
+	 */
+	public synchronized long pack(File memoFile) {
+		checkOpen();
+		refreshRecordCount();
+		File directory = this.file.getAbsoluteFile().getParentFile();
+		File packed = null;
+		File packedMemo = null;
+		File memoBackup = null;
+		boolean memoReplaced = false;
+		boolean replaced = false;
+		DBFMemoFile memoReader = null;
+		DBFMemoWriter memoWriter = null;
+		try {
+			long oldSize = this.channel.size();
+			long oldMemoSize = memoFile != null ? memoFile.length() : 0;
+			packed = File.createTempFile("pack", ".tmp", directory);
+			if (memoFile != null) {
+				String extension = memoFile.getName().toLowerCase().endsWith(".fpt") ? ".fpt" : ".dbt";
+				packedMemo = File.createTempFile("pack", extension, directory);
+				// an empty file, so the writer creates the header
+				memoWriter = new DBFMemoWriter(packedMemo, getCharset());
+				memoReader = new DBFMemoFile(memoFile, getCharset());
+			}
+			int live;
+			try (RandomAccessFile out = new RandomAccessFile(packed, "rw")) {
+				live = copyLiveRecords(out.getChannel(), memoReader, memoWriter);
+				out.getChannel().force(false);
+			}
+			if (memoWriter != null) {
+				memoWriter.close();
+				memoWriter = null;
+				DBFUtils.close(memoReader);
+				memoReader = null;
+				memoBackup = File.createTempFile("pack", ".bak", directory);
+				moveFile(memoFile, memoBackup);
+				memoReplaced = true;
+				moveFile(packedMemo, memoFile);
+				packedMemo = null;
+			}
+			DBFUtils.close(this.predicateReader);
+			this.predicateReader = null;
+			DBFUtils.close(this.raf);
+			try {
+				moveFile(packed, this.file);
+				replaced = true;
+				packed = null;
+			}
+			finally {
+				// the original file if it could not be replaced
+				reopen();
+			}
+			this.recordCount = live;
+			this.modified = true;
+			long reclaimed = oldSize - this.channel.size();
+			if (memoFile != null) {
+				reclaimed += oldMemoSize - memoFile.length();
+			}
+			return reclaimed;
+		}
+		catch (IOException e) {
+			DBFException exception = new DBFException(e.getMessage(), e);
+			if (memoReplaced && !replaced) {
+				// the records still reference the blocks of the original memo file
+				try {
+					moveFile(memoBackup, memoFile);
+					memoReplaced = false;
+				}
+				catch (IOException restoreException) {
+					exception = new DBFException("Cannot restore memo file " + memoFile.getName() + " from "
+							+ memoBackup.getPath() + ": " + restoreException.getMessage(), e);
+					exception.addSuppressed(restoreException);
+					// kept as the only copy of the original memo file
+					memoBackup = null;
+				}
+			}
+			throw exception;
+		}
+		finally {
+			DBFUtils.close(memoWriter);
+			DBFUtils.close(memoReader);
+			if (packed != null) {
+				packed.delete();
+			}
+			if (packedMemo != null) {
+				packedMemo.delete();
+			}
+			if (memoBackup != null && (replaced || !memoReplaced)) {
+				memoBackup.delete();
+			}
+		}
+	}
+
+	/**
+	 * Replaces a file with an atomic rename
+	 * @param source the file to rename
+	 * @param target the file replaced
+	 */
+	void moveFile(File source, File target) throws IOException {
+		Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void reopen() throws IOException {
+		try {
+			this.raf = new RandomAccessFile(this.file, "rw");
+			this.channel = this.raf.getChannel();
+		}
+		catch (IOException e) {
+			this.closed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the file
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		DBFUtils.close(this.predicateReader);
+		DBFUtils.close(this.raf);
+	}
+
+	/**
+	 * Writes some bytes at the same offset of the records that are not
+	 * deleted and match the predicate. Records are read from the mapping in
+	 * chunks to evaluate the predicate, and the mapping is forced once at
+	 * the end.
+	 */
+	private synchronized int mutate(DBFPredicate predicate, int offset, byte[] bytes) {
+		checkOpen();
+		refreshRecordCount();
+		DBFPredicate.Matcher matcher = predicate != null ? predicate.compile(getPredicateReader()) : null;
+		int recordsPerSegment = (int) Math.max(1L, MAX_SEGMENT_SIZE / this.recordLength);
+		int recordsPerChunk = Math.max(1, CHUNK_SIZE / this.recordLength);
+		byte[] chunk = new byte[recordsPerChunk * this.recordLength];
+		int affected = 0;
+		try {
+			// a mapping past the end of the file would extend it
+			long available = Math.max(0L, this.channel.size() - this.header.headerLength);
+			int count = (int) Math.min(this.recordCount, available / this.recordLength);
+			for (int first = 0; first < count; first += recordsPerSegment) {
+				int segmentRecords = Math.min(recordsPerSegment, count - first);
+				MappedByteBuffer segment = this.channel.map(FileChannel.MapMode.READ_WRITE,
+						getRecordPosition(first), (long) segmentRecords * this.recordLength);
+				boolean changed = false;
+				for (int chunkFirst = 0; chunkFirst < segmentRecords; chunkFirst += recordsPerChunk) {
+					int chunkRecords = Math.min(recordsPerChunk, segmentRecords - chunkFirst);
+					int chunkStart = chunkFirst * this.recordLength;
+					segment.position(chunkStart);
+					segment.get(chunk, 0, chunkRecords * this.recordLength);
+					for (int i = 0; i < chunkRecords; i++) {
+						int recordOffset = i * this.recordLength;
+						if (chunk[recordOffset] == DELETED || (matcher != null && !matcher.matches(chunk, recordOffset))) {
+							continue;
+						}
+						segment.position(chunkStart + recordOffset + offset);
+						segment.put(bytes);
+						changed = true;
+						affected++;
+					}
+				}
+				if (changed) {
+					segment.force();
+				}
+			}
+			if (affected > 0) {
+				updateDate();
+			}
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+		return affected;
+	}
+
+	/**
+	 * Copies the header and the live records to a new file, and updates its
+	 * number of records and date. Without memo files runs of live records
+	 * are transferred between the channels; with memo files the records are
+	 * read in chunks to update their memo blocks.
+	 * @return the number of live records
+	 */
+	private int copyLiveRecords(FileChannel out, DBFMemoFile memoReader, DBFMemoWriter memoWriter) throws IOException {
+		long dataStart = this.header.headerLength;
+		transferFully(0, dataStart, out, 0);
+		long available = Math.max(0L, this.channel.size() - dataStart);
+		int count = (int) Math.min(this.recordCount, available / this.recordLength);
+		int recordsPerChunk = Math.max(1, CHUNK_SIZE / this.recordLength);
+		ByteBuffer chunk = ByteBuffer.allocate(recordsPerChunk * this.recordLength);
+		byte[] data = chunk.array();
+		boolean fromChunk = memoWriter != null;
+		// new block of each memo value already copied, values shared by several records are copied once
+		Map<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+		long outPosition = dataStart;
+		int live = 0;
+		// index of the first record of the current run of live records, -1 if none
+		int runStart = -1;
+		int first = 0;
+		for (; first < count; first += recordsPerChunk) {
+			int chunkRecords = Math.min(recordsPerChunk, count - first);
+			chunk.clear();
+			chunk.limit(chunkRecords * this.recordLength);
+			readFully(chunk, getRecordPosition(first));
+			for (int i = 0; i < chunkRecords; i++) {
+				if (data[i * this.recordLength] != DELETED) {
+					if (fromChunk) {
+						copyMemoValues(data, i * this.recordLength, memoReader, memoWriter, blocks);
+					}
+					live++;
+					if (runStart < 0) {
+						runStart = first + i;
+					}
+				}
+				else if (runStart >= 0) {
+					outPosition += copyRun(runStart, first + i, first, data, fromChunk, out, outPosition);
+					runStart = -1;
+				}
+			}
+			if (fromChunk && runStart >= 0) {
+				// the updated records are only in this chunk
+				outPosition += copyRun(runStart, first + chunkRecords, first, data, true, out, outPosition);
+				runStart = -1;
+			}
+		}
+		if (runStart >= 0) {
+			outPosition += copyRun(runStart, count, first, data, false, out, outPosition);
+		}
+		out.write(ByteBuffer.wrap(new byte[] {DBFBase.END_OF_DATA}), outPosition);
+		out.truncate(outPosition + 1);
+
+		Calendar calendar = Calendar.getInstance();
+		ByteBuffer header = ByteBuffer.allocate(7);
+		header.put((byte) (calendar.get(Calendar.YEAR) - 1900));
+		header.put((byte) (calendar.get(Calendar.MONTH) + 1));
+		header.put((byte) calendar.get(Calendar.DAY_OF_MONTH));
+		header.putInt(Integer.reverseBytes(live));
+		header.flip();
+		while (header.hasRemaining()) {
+			out.write(header, 1 + header.position());
+		}
+		return live;
+	}
+
+	/**
+	 * Copies the records [from, to) to the new file, from the chunk read
+	 * starting at chunkFirst or transferring them between the channels
+	 * @return the number of bytes copied
+	 */
+	private long copyRun(int from, int to, int chunkFirst, byte[] data, boolean fromChunk, FileChannel out, long outPosition) throws IOException {
+		long length = (long) (to - from) * this.recordLength;
+		if (fromChunk) {
+			int offset = (from - chunkFirst) * this.recordLength;
+			ByteBuffer run = ByteBuffer.wrap(data, offset, (int) length);
+			while (run.hasRemaining()) {
+				out.write(run, outPosition + run.position() - offset);
+			}
+		}
+		else {
+			transferFully(getRecordPosition(from), length, out, outPosition);
+		}
+		return length;
+	}
+
+	/**
+	 * Copies the memo values of a record to the new memo file, updating
+	 * their blocks in the record. Values already copied for other records
+	 * are not copied again.
+	 */
+	private void copyMemoValues(byte[] data, int recordOffset, DBFMemoFile memoReader, DBFMemoWriter memoWriter,
+			Map<Integer, Integer> blocks) {
+		for (int i = 0; i < this.header.fieldArray.length; i++) {
+			DBFField field = this.header.fieldArray[i];
+			if (!isMemoField(field)) {
+				continue;
+			}
+			int offset = recordOffset + this.encoder.getFieldOffset(i);
+			int block;
+			if (field.getLength() == 10) {
+				Number number = DBFUtils.readNumericStoredAsText(data, offset, 10);
+				block = number != null ? number.intValue() : 0;
+			}
+			else {
+				block = DBFUtils.readLittleEndianInt(data, offset);
+			}
+			if (block <= 0) {
+				continue;
+			}
+			Integer newBlock = blocks.get(block);
+			if (newBlock == null) {
+				DBFMemoFile.MemoItem item = memoReader.locate(block, field.getType());
+				newBlock = memoWriter.write(item.type, memoReader.readBytes(item));
+				blocks.put(block, newBlock);
+			}
+			byte[] record = this.encoder.encodeField(i, newBlock);
+			System.arraycopy(record, this.encoder.getFieldOffset(i), data, offset, field.getLength());
+		}
+	}
+
+	private static boolean isMemoField(DBFField field) {
+		switch (field.getType()) {
+		case MEMO:
+		case BLOB:
+		case GENERAL_OLE:
+		case PICTURE:
+			return true;
+		case BINARY:
+			// Visual FoxPro stores doubles in binary fields of length 8
+			return field.getLength() != 8;
+		default:
+			return false;
+		}
+	}
+
+	private void transferFully(long position, long count, FileChannel target, long targetPosition) throws IOException {
+		target.position(targetPosition);
+		long done = 0;
+		while (done < count) {
+			long transferred = this.channel.transferTo(position + done, count - done, target);
+			if (transferred <= 0) {
+				throw new DBFException("Unexpected end of file");
+			}
+			done += transferred;
+		}
+	}
+
+	/**
+	 * Gets a reader over the file, used to bind predicates to its fields
+	 */
+	private DBFReader getPredicateReader() {
+		if (this.predicateReader == null) {
+			try {
+				this.predicateReader = new DBFReader(new FileInputStream(this.file), getCharset());
+			}
+			catch (FileNotFoundException e) {
+				throw new DBFException("Specified file is not found. " + e.getMessage(), e);
+			}
+		}
+		return this.predicateReader;
+	}
+
+	private synchronized void writeDeletedFlag(int index, byte flag) {
+		checkOpen();
+		checkIndex(index);
+		try {
+			writeFully(ByteBuffer.wrap(new byte[] {flag}), getRecordPosition(index));
+			updateDate();
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	private void checkOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("DBFTable is closed");
+		}
+	}
+
+	/**
+	 * Checks the index of a record, reading the number of records again
+	 * from the header if records were appended after opening the file
+	 */
+	private void checkIndex(int index) {
+		if (index >= this.recordCount && index >= 0) {
+			refreshRecordCount();
+		}
+		if (index < 0 || index >= this.recordCount) {
+			throw new DBFException("Invalid record index: (" + index + "). Valid range is 0 to " + (this.recordCount - 1));
+		}
+	}
+
+	private void refreshRecordCount() {
+		try {
+			ByteBuffer count = ByteBuffer.allocate(4);
+			readFully(count, 4);
+			this.recordCount = Integer.reverseBytes(count.getInt(0));
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+	}
+
+	private void checkFieldValue(int fieldIndex, Object value) {
+		if (value == null) {
+			return;
+		}
+		if (!isWritable(fieldIndex)) {
+			throw new DBFException("Field " + fieldIndex + " can not be updated");
+		}
+		DBFWriter.checkValue(this.header.fieldArray[fieldIndex], fieldIndex, value);
+	}
+
+	private boolean isWritable(int fieldIndex) {
+		DBFDataType type = this.header.fieldArray[fieldIndex].getType();
+		switch (type) {
+		case MEMO:
+		case BINARY:
+		case BLOB:
+		case GENERAL_OLE:
+		case PICTURE:
+			return false;
+		default:
+			return type.isWriteSupported();
+		}
+	}
+
+	private int getFieldIndex(String fieldName) {
+		for (int i = 0; i < this.header.fieldArray.length; i++) {
+			if (this.header.fieldArray[i].getName().equalsIgnoreCase(fieldName)) {
+				return i;
+			}
+		}
+		throw new DBFFieldNotFoundException("No field found for:" + fieldName);
+	}
+
+	private long getRecordPosition(int index) {
+		return this.header.headerLength + (long) index * this.recordLength;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (this.channel.read(buffer, position + buffer.position()) < 0) {
+				throw new DBFException("Unexpected end of file");
+			}
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		long start = position - buffer.position();
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer, start + buffer.position());
+		}
+	}
+
+	/**
+	 * Sets the date of last update in the header to today, on the first
+	 * change
+	 */
+	private void updateDate() throws IOException {
+		if (this.modified) {
+			return;
+		}
+		Calendar calendar = Calendar.getInstance();
+		byte[] date = new byte[] {
+			(byte) (calendar.get(Calendar.YEAR) - 1900),
+			(byte) (calendar.get(Calendar.MONTH) + 1),
+			(byte) calendar.get(Calendar.DAY_OF_MONTH)
+		};
+		writeFully(ByteBuffer.wrap(date), 1);
+		this.modified = true;
+	}
+}
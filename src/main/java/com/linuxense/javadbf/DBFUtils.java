@@ -28,6 +28,7 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
@@ -47,6 +48,21 @@ public final class DBFUtils {
 
 	private static final CharsetEncoder ASCII_ENCODER = Charset.forName("US-ASCII").newEncoder();
 
+	static final int NUMERIC_NULL = -1;
+	static final int NUMERIC_NOT_SIMPLE = -2;
+	static final int MAX_SIMPLE_DIGITS = 18;
+	private static final double DOUBLE_FIXED_POINT_LIMIT = 1e15;
+	static final long[] LONG_POWERS_OF_TEN = new long[MAX_SIMPLE_DIGITS + 1];
+	private static final double[] DOUBLE_POWERS_OF_TEN = new double[MAX_SIMPLE_DIGITS + 1];
+	static {
+		LONG_POWERS_OF_TEN[0] = 1;
+		DOUBLE_POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i <= MAX_SIMPLE_DIGITS; i++) {
+			LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+			DOUBLE_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i];
+		}
+	}
+
 	private DBFUtils() {
 		throw new AssertionError("No instances of this class are allowed");
 	}
@@ -60,12 +76,142 @@ public final class DBFUtils {
 	 * @throws EOFException if reached end of file before length bytes
 	 */
 	public static Number readNumericStoredAsText(DataInputStream dataInput, int length) throws IOException {
-		try {
-			byte t_float[] = new byte[length];
-			int readed = dataInput.read(t_float);
-			if (readed != length) {
-				throw new EOFException("failed to read:" + length + " bytes");
+		byte t_float[] = new byte[length];
+		int readed = dataInput.read(t_float);
+		if (readed != length) {
+			throw new EOFException("failed to read:" + length + " bytes");
+		}
+		return readNumericStoredAsText(t_float, 0, length);
+	}
+
+	/**
+	 * Reads a number stored as text from a buffer
+	 * @param data the buffer
+	 * @param offset position of the number in the buffer
+	 * @param length the legth of the number
+	 * @return The number as a Number (BigDecimal)
+	 */
+	public static Number readNumericStoredAsText(byte[] data, int offset, int length) {
+		int scale = numericTextScale(data, offset, length);
+		if (scale == NUMERIC_NULL) {
+			return null;
+		}
+		if (scale != NUMERIC_NOT_SIMPLE) {
+			return BigDecimal.valueOf(numericTextUnscaledValue(data, offset, length), scale);
+		}
+		return parseNumericStoredAsText(data, offset, length);
+	}
+
+	/**
+	 * Reads a number stored as text from a buffer as a long, without creating
+	 * intermediate objects for the usual values. The decimal part is discarded.
+	 * @param data the buffer
+	 * @param offset position of the number in the buffer
+	 * @param length the legth of the number
+	 * @return The number as a long, 0 if the field is empty
+	 */
+	public static long readNumericStoredAsLong(byte[] data, int offset, int length) {
+		int scale = numericTextScale(data, offset, length);
+		if (scale == NUMERIC_NULL) {
+			return 0;
+		}
+		if (scale != NUMERIC_NOT_SIMPLE) {
+			return numericTextUnscaledValue(data, offset, length) / LONG_POWERS_OF_TEN[scale];
+		}
+		Number value = parseNumericStoredAsText(data, offset, length);
+		return value != null ? value.longValue() : 0;
+	}
+
+	/**
+	 * Reads a number stored as text from a buffer as a double, without creating
+	 * intermediate objects for the usual values.
+	 * @param data the buffer
+	 * @param offset position of the number in the buffer
+	 * @param length the legth of the number
+	 * @return The number as a double, 0 if the field is empty
+	 */
+	public static double readNumericStoredAsDouble(byte[] data, int offset, int length) {
+		int scale = numericTextScale(data, offset, length);
+		if (scale == NUMERIC_NULL) {
+			return 0;
+		}
+		if (scale != NUMERIC_NOT_SIMPLE) {
+			long unscaled = numericTextUnscaledValue(data, offset, length);
+			// both values are exact doubles, so the division is correctly rounded
+			if (Math.abs(unscaled) < (1L << 53)) {
+				return unscaled / DOUBLE_POWERS_OF_TEN[scale];
 			}
+			return BigDecimal.valueOf(unscaled, scale).doubleValue();
+		}
+		Number value = parseNumericStoredAsText(data, offset, length);
+		return value != null ? value.doubleValue() : 0;
+	}
+
+	/**
+	 * Checks a number stored as text, ignoring spaces and null bytes.
+	 * @return the scale of the number if it is a plain decimal number that fits
+	 *         in a long, NUMERIC_NULL if the value must be read as null or
+	 *         NUMERIC_NOT_SIMPLE if it must be parsed with BigDecimal
+	 */
+	static int numericTextScale(byte[] data, int offset, int length) {
+		boolean empty = true;
+		boolean simple = true;
+		boolean decimalSeparator = false;
+		int digits = 0;
+		int significantDigits = 0;
+		int scale = 0;
+		for (int i = offset; i < offset + length; i++) {
+			byte b = data[i];
+			if (b == ' ' || b == 0) {
+				continue;
+			}
+			if (b < 0 || b == '?' || b == '*') {
+				return NUMERIC_NULL;
+			}
+			if (b >= '0' && b <= '9') {
+				digits++;
+				if (significantDigits > 0 || b != '0') {
+					significantDigits++;
+				}
+				if (decimalSeparator) {
+					scale++;
+				}
+			}
+			else if ((b == '.' || b == ',') && !decimalSeparator) {
+				decimalSeparator = true;
+			}
+			else if ((b != '-' && b != '+') || !empty) {
+				simple = false;
+			}
+			empty = false;
+		}
+		if (empty) {
+			return NUMERIC_NULL;
+		}
+		if (!simple || digits == 0 || significantDigits > MAX_SIMPLE_DIGITS || scale > MAX_SIMPLE_DIGITS) {
+			return NUMERIC_NOT_SIMPLE;
+		}
+		return scale;
+	}
+
+	static long numericTextUnscaledValue(byte[] data, int offset, int length) {
+		long value = 0;
+		boolean negative = false;
+		for (int i = offset; i < offset + length; i++) {
+			byte b = data[i];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+			}
+			else if (b == '-') {
+				negative = true;
+			}
+		}
+		return negative ? -value : value;
+	}
+
+	private static Number parseNumericStoredAsText(byte[] data, int offset, int length) {
+		try {
+			byte t_float[] = Arrays.copyOfRange(data, offset, offset + length);
 			t_float = DBFUtils.removeSpaces(t_float);
 			t_float = DBFUtils.removeNullBytes(t_float);
 			if (t_float.length > 0 && DBFUtils.isPureAscii(t_float) && !DBFUtils.contains(t_float, (byte) '?') && !DBFUtils.contains(t_float, (byte) '*')) {
@@ -97,6 +243,44 @@ public final class DBFUtils {
 		return bigEndian;
 	}
 
+	/**
+	 * Read a littleEndian integer(32 bits) from a buffer
+	 * @param data the buffer
+	 * @param offset position of the integer in the buffer
+	 * @return int value of the 32 bits at offset as littleEndian
+	 */
+	public static int readLittleEndianInt(byte[] data, int offset) {
+		return (data[offset] & 0xff)
+				| (data[offset + 1] & 0xff) << 8
+				| (data[offset + 2] & 0xff) << 16
+				| (data[offset + 3] & 0xff) << 24;
+	}
+
+	/**
+	 * Read an integer stored as in dBase 7 long and autoincrement fields:
+	 * big endian, with the sign bit flipped so the bytes sort as the values
+	 * @param data the buffer
+	 * @param offset position of the integer in the buffer
+	 * @return the integer
+	 */
+	public static int readDBase7Int(byte[] data, int offset) {
+		return ((data[offset] & 0xff) << 24
+				| (data[offset + 1] & 0xff) << 16
+				| (data[offset + 2] & 0xff) << 8
+				| (data[offset + 3] & 0xff)) ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Read a littleEndian long(64 bits) from a buffer
+	 * @param data the buffer
+	 * @param offset position of the long in the buffer
+	 * @return long value of the 64 bits at offset as littleEndian
+	 */
+	public static long readLittleEndianLong(byte[] data, int offset) {
+		return (readLittleEndianInt(data, offset) & 0xffffffffL)
+				| ((long) readLittleEndianInt(data, offset + 4)) << 32;
+	}
+
 	/**
 	 * Read a littleEndian short(16 bits) from DataInput
 	 * @param in DataInput to read from
@@ -235,6 +419,111 @@ public final class DBFUtils {
 	 */
 
 	public static byte[] doubleFormating(Number num, Charset charset, int fieldLength, int sizeDecimalPart) {
+		byte[] result = new byte[fieldLength];
+		if (formatFixedPoint(num, fieldLength, sizeDecimalPart, result, 0)) {
+			return result;
+		}
+		return formatWithDecimalFormat(num, charset, fieldLength, sizeDecimalPart);
+	}
+
+	/**
+	 * Writes a number right aligned and padded with spaces, with the given
+	 * number of decimals, rounding half even. The result is the same as
+	 * {@link #doubleFormating(Number, Charset, int, int)}, which uses
+	 * DecimalFormat, for the supported cases.
+	 * @param num number to format: Integer, Long, Short, Byte, Double, Float or BigDecimal
+	 * @param fieldLength field length
+	 * @param sizeDecimalPart decimal part size
+	 * @param out array to write to
+	 * @param offset position of the field in the array
+	 * @return true if the number was written, false if it is not supported
+	 *         (other types, NaN, infinite, too many digits or not fitting
+	 *         in the field)
+	 */
+	static boolean formatFixedPoint(Number num, int fieldLength, int sizeDecimalPart, byte[] out, int offset) {
+		int sizeWholePart = fieldLength - (sizeDecimalPart > 0 ? (sizeDecimalPart + 1) : 0);
+		if (sizeWholePart < 1 || sizeDecimalPart > MAX_SIMPLE_DIGITS) {
+			return false;
+		}
+		boolean negative;
+		long unscaled;
+		if (num instanceof Integer || num instanceof Long || num instanceof Short || num instanceof Byte) {
+			long value = num.longValue();
+			negative = value < 0;
+			if (value == Long.MIN_VALUE || Math.abs(value) >= LONG_POWERS_OF_TEN[MAX_SIMPLE_DIGITS - sizeDecimalPart]) {
+				return false;
+			}
+			unscaled = Math.abs(value) * LONG_POWERS_OF_TEN[sizeDecimalPart];
+		}
+		else if (num instanceof Double || num instanceof Float) {
+			double value = num.doubleValue();
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return false;
+			}
+			// DecimalFormat keeps the sign of negative zero
+			negative = Double.doubleToRawLongBits(value) < 0;
+			double scaled = Math.abs(value) * DOUBLE_POWERS_OF_TEN[sizeDecimalPart];
+			// beyond 15 digits DecimalFormat pads the shortest representation with zeros
+			if (!(scaled < DOUBLE_FIXED_POINT_LIMIT)) {
+				return false;
+			}
+			double floor = Math.floor(scaled);
+			if (Math.abs(scaled - floor - 0.5) > Math.ulp(scaled)) {
+				unscaled = (long) floor + (scaled - floor > 0.5 ? 1 : 0);
+			}
+			else {
+				// too close to a tie to trust the multiplication
+				BigDecimal rounded = new BigDecimal(Math.abs(value)).setScale(sizeDecimalPart, RoundingMode.HALF_EVEN);
+				unscaled = rounded.unscaledValue().longValue();
+			}
+		}
+		else if (num instanceof BigDecimal) {
+			BigDecimal value = (BigDecimal) num;
+			negative = value.signum() < 0;
+			BigDecimal rounded = value.abs().setScale(sizeDecimalPart, RoundingMode.HALF_EVEN);
+			if (rounded.precision() > MAX_SIMPLE_DIGITS) {
+				return false;
+			}
+			unscaled = rounded.unscaledValue().longValue();
+		}
+		else {
+			return false;
+		}
+		int digits = Math.max(countDigits(unscaled), sizeDecimalPart + 1);
+		int textLength = digits + (sizeDecimalPart > 0 ? 1 : 0) + (negative ? 1 : 0);
+		if (textLength > fieldLength) {
+			return false;
+		}
+		int position = offset + fieldLength - 1;
+		for (int i = 0; i < sizeDecimalPart; i++) {
+			out[position--] = (byte) ('0' + unscaled % 10);
+			unscaled /= 10;
+		}
+		if (sizeDecimalPart > 0) {
+			out[position--] = '.';
+		}
+		do {
+			out[position--] = (byte) ('0' + unscaled % 10);
+			unscaled /= 10;
+		} while (unscaled != 0);
+		if (negative) {
+			out[position--] = '-';
+		}
+		while (position >= offset) {
+			out[position--] = ' ';
+		}
+		return true;
+	}
+
+	private static int countDigits(long value) {
+		int digits = 1;
+		while (digits <= MAX_SIMPLE_DIGITS && value >= LONG_POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		return digits;
+	}
+
+	static byte[] formatWithDecimalFormat(Number num, Charset charset, int fieldLength, int sizeDecimalPart) {
 		int sizeWholePart = fieldLength - (sizeDecimalPart > 0 ? (sizeDecimalPart + 1) : 0);
 
 		StringBuilder format = new StringBuilder(fieldLength);
@@ -335,6 +624,21 @@ public final class DBFUtils {
 		return newBytes;
 	}
 
+	/**
+	 * Gets the length of the data without the right spaces
+	 * @param data the buffer
+	 * @param offset position of the data in the buffer
+	 * @param length length of the data
+	 * @return the length of the data without right spaces
+	 */
+	public static int rightTrimmedLength(byte[] data, int offset, int length) {
+		int pos = offset + length - 1;
+		while (pos >= offset && data[pos] == (byte) ' ') {
+			pos--;
+		}
+		return pos - offset + 1;
+	}
+
 	private static int getRightPos(byte[] b_array) {
 
 		int pos = b_array.length - 1;
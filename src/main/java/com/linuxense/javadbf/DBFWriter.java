@@ -23,18 +23,26 @@ package com.linuxense.javadbf;
 
 
 import java.io.DataOutput;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.BitSet;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 /*
@@ -54,12 +62,25 @@ import java.util.List;
  */
 public class DBFWriter extends DBFBase implements java.io.Closeable {
 
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
 	private DBFHeader header;
 	private List<Object[]> v_records = new ArrayList<>();
 	private int recordCount = 0;
 	//Open and append records to an existing DBF
 	private RandomAccessFile raf = null;
 	private OutputStream outputStream = null;
+	private DBFMemoWriter memoWriter = null;
+	// streaming mode, only with OutputStream
+	private boolean streamingMode = false;
+	private int declaredRecordCount = -1;
+	/** next autoincrement values written in the header with a declared record count */
+	private int[] autoincrementLimits = null;
+	private DataOutputStream streamOutput = null;
+	private File spillFile = null;
+	private DBFRecordEncoder encoder = null;
+	private int writeBufferSize = 64 * 1024;
+	private ByteBuffer writeBuffer = null;
 
 	private boolean closed = false;
 
@@ -194,26 +215,152 @@ public class DBFWriter extends DBFBase implements java.io.Closeable {
 			if (fields[i] == null) {
 				throw new DBFException("Field " + i + " is null");
 			}
+			if (isMemoType(fields[i].getType()) && fields[i].getLength() != 4 && fields[i].getLength() != 10) {
+				throw new DBFException("Memo field " + i + " should have length 4 or 10");
+			}
 		}
 		this.header.fieldArray = new DBFField[fields.length];
 		for (int i = 0; i < fields.length; i++) {
 			this.header.fieldArray[i] = new DBFField(fields[i]);
 		}
+		this.header.setFieldsSignature();
 		try {
 			if (this.raf != null && this.raf.length() == 0) {
 				// this is a new/non-existent file. So write header before proceeding
-				this.header.write(this.raf);
+				writeHeader();
 			}
 		} catch (IOException e) {
 			throw new DBFException("Error accesing file:" + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Sets the streaming mode (default false). By default, when writing to an
+	 * OutputStream, records are kept in memory and written on close. In
+	 * streaming mode records are written as they are added: if the number of
+	 * records has been declared with {@link #setRecordCount(int)} they are
+	 * written directly to the stream after the header, otherwise they are
+	 * written to a temporary file and copied to the stream on close. Memory
+	 * use doesn't depend on the number of records.
+	 * <p>
+	 * Must be called before adding records. It has no effect when appending
+	 * to a file, where records are always written as they are added.
+	 * </p>
+	 * @param streamingMode true to write records as they are added
+	 */
+	public void setStreamingMode(boolean streamingMode) {
+		checkStreamingNotStarted();
+		this.streamingMode = streamingMode;
+		if (!streamingMode) {
+			this.declaredRecordCount = -1;
+		}
+	}
+
+	/**
+	 * Checks if records are written as they are added
+	 * @return true in streaming mode
+	 */
+	public boolean isStreamingMode() {
+		return this.streamingMode;
+	}
+
+	/**
+	 * Declares the number of records that will be written to the
+	 * OutputStream, so the header is written with the first record and the
+	 * records are written directly to the stream. Enables the streaming mode.
+	 * Closing the writer with a different number of records throws a
+	 * DBFException.
+	 * <p>
+	 * As the header is written before the records, the next value of
+	 * autoincrement fields is written as if every record took the next
+	 * value, and adding a value at or beyond it throws a DBFException.
+	 * </p>
+	 * @param recordCount the number of records that will be added
+	 */
+	public void setRecordCount(int recordCount) {
+		if (this.raf != null) {
+			throw new DBFException("Record count can only be declared when writing to an OutputStream");
+		}
+		if (recordCount < 0) {
+			throw new IllegalArgumentException("Record count cannot be negative");
+		}
+		checkStreamingNotStarted();
+		this.streamingMode = true;
+		this.declaredRecordCount = recordCount;
+	}
+
+	private void checkStreamingNotStarted() {
+		if (this.closed) {
+			throw new IllegalStateException("You can not change the streaming mode of a closed DBFWriter");
+		}
+		if (!this.v_records.isEmpty() || this.streamOutput != null) {
+			throw new DBFException("Streaming mode should be set before adding records");
+		}
+	}
+
+	/**
+	 * Sets the memo file (DBT or FPT, by its extension) where the values of
+	 * memo fields (M, B, G, P and W) are written. If the file exists values
+	 * are appended to it. Memo fields accept String, byte[] or InputStream
+	 * values; streams are copied to the memo file when the record is added,
+	 * without holding the value in memory, and are not closed.
+	 * <p>
+	 * Memo fields of length 10 store the block number as text, fields of
+	 * length 4 store it as a binary integer.
+	 * </p>
+	 * @param memoFile the memo file
+	 */
+	public void setMemoFile(File memoFile) {
+		if (this.closed) {
+			throw new IllegalStateException("You can not set the memo file of a closed DBFWriter");
+		}
+		if (this.memoWriter != null) {
+			throw new DBFException("Memo file has already been set");
+		}
+		// checked before the memo file is created
+		this.header.checkMemoFormat(DBFMemoWriter.isFPTFile(memoFile));
+		this.memoWriter = new DBFMemoWriter(memoFile, getCharset());
+		this.header.setMemoSignature(this.memoWriter.isFPT());
+	}
+
 	/**
 	 * Add a record.
 	 * @param values fields of the record
 	 */
 	public void addRecord(Object[] values) {
+		checkRecord(values);
+
+		if (this.declaredRecordCount >= 0 && this.recordCount >= this.declaredRecordCount) {
+			throw new DBFException("Only " + this.declaredRecordCount + " records were declared");
+		}
+		if (this.declaredRecordCount >= 0 && this.streamOutput == null) {
+			// the header reserves the autoincrement values before they are assigned
+			try {
+				startStreaming();
+			} catch (IOException e) {
+				throw new DBFException("Error occured while writing record. " + e.getMessage(), e);
+			}
+		}
+		values = writeMemoValues(assignAutoincrementValues(values));
+		if (this.raf == null && this.streamingMode) {
+			writeStreamingRecord(values);
+		} else if (this.raf == null) {
+			this.v_records.add(values);
+		} else {
+			try {
+				appendRecord(values);
+				this.recordCount++;
+			} catch (IOException e) {
+				throw new DBFException("Error occured while writing record. " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the values can be added as a record
+	 * @param values fields of the record
+	 */
+	void checkRecord(Object[] values) {
 		if (this.closed) {
 			throw new IllegalStateException("You can add records a closed DBFWriter");
 		}
@@ -234,52 +381,340 @@ public class DBFWriter extends DBFBase implements java.io.Closeable {
 			if (value == null) {
 				continue;
 			}
+			if (isMemoType(this.header.fieldArray[i].getType()) && this.memoWriter == null) {
+				throw new DBFException("Memo file should be set before adding values to field " + i);
+			}
+			checkValue(this.header.fieldArray[i], i, value);
+		}
+	}
 
-			switch (this.header.fieldArray[i].getType()) {
+	/**
+	 * Checks that a value, not null, can be written to a field
+	 * @param field the field
+	 * @param i the index of the field
+	 * @param value the value
+	 */
+	static void checkValue(DBFField field, int i, Object value) {
+		switch (field.getType()) {
 
-			case CHARACTER:
-				if (!(value instanceof String)) {
-					throw new DBFException("Invalid value for field " + i + ":" + value);
-				}
-				break;
+		case CHARACTER:
+			if (!(value instanceof String)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+
+		case LOGICAL:
+			if (!(value instanceof Boolean)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+
+		case DATE:
+			if (!(value instanceof Date)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+		case NUMERIC:
+		case FLOATING_POINT:
+		case DOUBLE:
+			if (!(value instanceof Number)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+		case CURRENCY:
+			if (!(value instanceof Number)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			DBFRecordEncoder.toCurrency((Number) value);
+			break;
+		case LONG:
+		case AUTOINCREMENT:
+			if (!(value instanceof Number)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			long longValue = ((Number) value).longValue();
+			if (longValue < Integer.MIN_VALUE || longValue > Integer.MAX_VALUE) {
+				throw new DBFException("Value out of range for field " + i + ":" + value);
+			}
+			break;
+		case TIMESTAMP:
+		case TIMESTAMP_DBASE7:
+			if (!(value instanceof Date)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+		case MEMO:
+		case BINARY:
+		case BLOB:
+		case GENERAL_OLE:
+		case PICTURE:
+			if (!(value instanceof String || value instanceof byte[] || value instanceof InputStream)) {
+				throw new DBFException("Invalid value for field " + i + ":" + value);
+			}
+			break;
+		default:
+			throw new DBFException("Unsupported writting of field type " + i + " "
+					+ field.getType());
+		}
+	}
 
-			case LOGICAL:
-				if (!(value instanceof Boolean)) {
-					throw new DBFException("Invalid value for field " + i + ":" + value);
+	/**
+	 * Assigns the next value of autoincrement fields to null values, and
+	 * moves the next value after the values given
+	 * @return the values, or a copy with the assigned values
+	 */
+	private Object[] assignAutoincrementValues(Object[] values) {
+		if (this.autoincrementLimits != null) {
+			checkAutoincrementLimits(values);
+		}
+		Object[] record = values;
+		for (int i = 0; i < this.header.fieldArray.length; i++) {
+			DBFField field = this.header.fieldArray[i];
+			if (field.getType() != DBFDataType.AUTOINCREMENT) {
+				continue;
+			}
+			int next = field.getNextAutoincrementValue();
+			if (values[i] == null) {
+				if (record == values) {
+					record = values.clone();
 				}
-				break;
+				record[i] = next;
+				field.setNextAutoincrementValue(next + 1);
+			}
+			else if (((Number) values[i]).intValue() >= next) {
+				field.setNextAutoincrementValue(((Number) values[i]).intValue() + 1);
+			}
+		}
+		return record;
+	}
 
-			case DATE:
-				if (!(value instanceof Date)) {
-					throw new DBFException("Invalid value for field " + i + ":" + value);
+	/**
+	 * Gets the next value of the autoincrement fields, to restore them if
+	 * the records encoded are discarded
+	 * @return the next value of each field
+	 */
+	int[] getAutoincrementValues() {
+		int[] values = new int[this.header.fieldArray.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.header.fieldArray[i].getNextAutoincrementValue();
+		}
+		return values;
+	}
+
+	/**
+	 * Restores the next value of the autoincrement fields
+	 * @param values the values returned by {@link #getAutoincrementValues()}
+	 */
+	void setAutoincrementValues(int[] values) {
+		for (int i = 0; i < values.length; i++) {
+			this.header.fieldArray[i].setNextAutoincrementValue(values[i]);
+		}
+	}
+
+	/**
+	 * Checks which fields are autoincrement fields
+	 * @return for each field, true if it is an autoincrement field, empty
+	 *          if the fields are not set
+	 */
+	boolean[] getAutoincrementFields() {
+		if (this.header.fieldArray == null) {
+			return new boolean[0];
+		}
+		boolean[] autoincrement = new boolean[this.header.fieldArray.length];
+		for (int i = 0; i < autoincrement.length; i++) {
+			autoincrement[i] = this.header.fieldArray[i].getType() == DBFDataType.AUTOINCREMENT;
+		}
+		return autoincrement;
+	}
+
+	/**
+	 * Renumbers the autoincrement values assigned to encoded records,
+	 * continuing from the next values stored in the header of the file, so
+	 * the values assigned by other writers appending to the file are not
+	 * repeated. Values given in the records are kept, and move the next
+	 * value after them as in {@link #addRecord(Object[])}. The caller must
+	 * hold the lock of the file.
+	 * @param records buffer with the encoded records, between 0 and its position
+	 * @param count number of records in the buffer
+	 * @param assigned the values assigned by this writer, index
+	 *          {@code record * fieldCount + field}
+	 * @param given the values given in the records, same index
+	 */
+	void renumberAutoincrementValues(ByteBuffer records, int count, BitSet assigned, int[] given) throws IOException {
+		DBFField[] fields = this.header.fieldArray;
+		FileChannel channel = this.raf.getChannel();
+		ByteBuffer stored = ByteBuffer.allocate(4);
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i].getType() != DBFDataType.AUTOINCREMENT) {
+				continue;
+			}
+			if (!this.header.isDB7()) {
+				// the next values are not stored in the header
+				if (count > 0) {
+					throw new DBFException("Autoincrement fields can only be shared in dBase 7 tables");
+				}
+				continue;
+			}
+			stored.clear();
+			long position = this.header.getTableHeaderSize() + (long) i * this.header.getFieldDescriptorSize() + 40;
+			while (stored.hasRemaining()) {
+				if (channel.read(stored, position + stored.position()) < 0) {
+					throw new DBFException("Unexpected end of file");
+				}
+			}
+			int next = Integer.reverseBytes(stored.getInt(0));
+			int offset = getEncoder().getFieldOffset(i);
+			for (int j = 0; j < count; j++) {
+				int index = j * fields.length + i;
+				if (assigned.get(index)) {
+					byte[] record = getEncoder().encodeField(i, next++);
+					System.arraycopy(record, offset, records.array(), j * record.length + offset, fields[i].getLength());
 				}
-				break;
-			case NUMERIC:
-			case FLOATING_POINT:
-				if (!(value instanceof Number)) {
-					throw new DBFException("Invalid value for field " + i + ":" + value);
+				else if (given[index] >= next) {
+					next = given[index] + 1;
 				}
-				break;
-			default:
-				throw new DBFException("Unsupported writting of field type " + i + " "
-						+ this.header.fieldArray[i].getType());
 			}
+			fields[i].setNextAutoincrementValue(next);
+		}
+	}
+
+	/**
+	 * Checks that the autoincrement values of a record are below the next
+	 * values already written in the header
+	 */
+	private void checkAutoincrementLimits(Object[] values) {
+		for (int i = 0; i < this.header.fieldArray.length; i++) {
+			DBFField field = this.header.fieldArray[i];
+			if (field.getType() != DBFDataType.AUTOINCREMENT) {
+				continue;
+			}
+			int value = values[i] != null ? ((Number) values[i]).intValue() : field.getNextAutoincrementValue();
+			if (value >= this.autoincrementLimits[i]) {
+				throw new DBFException("Autoincrement value " + value + " of " + field.getName()
+						+ " is not below the next value written in the header: " + this.autoincrementLimits[i]);
+			}
+		}
+	}
 
+	/**
+	 * Writes the values of memo fields to the memo file
+	 * @return a copy of the values with the block number of the memo values
+	 */
+	private Object[] writeMemoValues(Object[] values) {
+		if (this.memoWriter == null) {
+			return values;
+		}
+		Object[] record = values.clone();
+		for (int i = 0; i < this.header.fieldArray.length; i++) {
+			if (record[i] != null && isMemoType(this.header.fieldArray[i].getType())) {
+				record[i] = this.memoWriter.write(this.header.fieldArray[i].getType(), record[i]);
+			}
 		}
+		return record;
+	}
 
-		if (this.raf == null) {
-			this.v_records.add(values);
-		} else {
-			try {
-				writeRecord(this.raf, values);
-				this.recordCount++;
-			} catch (IOException e) {
-				throw new DBFException("Error occured while writing record. " + e.getMessage(), e);
+	private static boolean isMemoType(DBFDataType type) {
+		return type == DBFDataType.MEMO || type == DBFDataType.BINARY || type == DBFDataType.BLOB
+				|| type == DBFDataType.GENERAL_OLE || type == DBFDataType.PICTURE;
+	}
+
+	private void writeStreamingRecord(Object[] values) {
+		try {
+			if (this.streamOutput == null) {
+				startStreaming();
 			}
+			writeRecord(this.streamOutput, values);
+			this.recordCount++;
+		} catch (IOException e) {
+			throw new DBFException("Error occured while writing record. " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Starts writing records, after the header if the number of records is
+	 * known, or to a temporary file
+	 */
+	private void startStreaming() throws IOException {
+		if (this.declaredRecordCount >= 0) {
+			this.streamOutput = new DataOutputStream(new BufferedOutputStream(this.outputStream, STREAM_BUFFER_SIZE));
+			this.header.numberOfRecords = this.declaredRecordCount;
+			// the next values after all the declared records, restored once written
+			int[] next = new int[this.header.fieldArray.length];
+			int[] limits = new int[this.header.fieldArray.length];
+			for (int i = 0; i < this.header.fieldArray.length; i++) {
+				DBFField field = this.header.fieldArray[i];
+				next[i] = field.getNextAutoincrementValue();
+				limits[i] = next[i] + this.declaredRecordCount - this.recordCount;
+				if (field.getType() == DBFDataType.AUTOINCREMENT) {
+					field.setNextAutoincrementValue(limits[i]);
+				}
+			}
+			try {
+				this.header.write(this.streamOutput);
+			}
+			finally {
+				for (int i = 0; i < this.header.fieldArray.length; i++) {
+					this.header.fieldArray[i].setNextAutoincrementValue(next[i]);
+				}
+			}
+			this.autoincrementLimits = limits;
+		}
+		else {
+			this.spillFile = File.createTempFile("javadbf", ".tmp");
+			this.streamOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spillFile), STREAM_BUFFER_SIZE));
+		}
+	}
 
+	/**
+	 * Writes the end of the file in streaming mode. If the records were
+	 * written to a temporary file, writes the header and copies the records.
+	 */
+	private void finishStreaming() {
+		try {
+			if (this.streamOutput == null) {
+				startStreaming();
+			}
+			if (this.declaredRecordCount >= 0) {
+				if (this.recordCount != this.declaredRecordCount) {
+					throw new DBFException(this.declaredRecordCount + " records were declared but "
+							+ this.recordCount + " were added");
+				}
+				this.streamOutput.write(END_OF_DATA);
+				this.streamOutput.flush();
+				return;
+			}
+			this.streamOutput.close();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(this.outputStream, STREAM_BUFFER_SIZE));
+			this.header.numberOfRecords = this.recordCount;
+			this.header.write(out);
+			out.flush();
+			FileInputStream records = new FileInputStream(this.spillFile);
+			try {
+				FileChannel channel = records.getChannel();
+				WritableByteChannel target = this.outputStream instanceof FileOutputStream
+						? ((FileOutputStream) this.outputStream).getChannel()
+						: Channels.newChannel(this.outputStream);
+				long size = channel.size();
+				long position = 0;
+				while (position < size) {
+					position += channel.transferTo(position, size - position, target);
+				}
+			}
+			finally {
+				DBFUtils.close(records);
+			}
+			out.write(END_OF_DATA);
+			out.flush();
+		} catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
+		}
+		finally {
+			if (this.spillFile != null) {
+				DBFUtils.close(this.streamOutput);
+				this.spillFile.delete();
+			}
+		}
+	}
 
 	private void writeToStream(OutputStream out) {
 		try {
@@ -305,19 +740,40 @@ public class DBFWriter extends DBFBase implements java.io.Closeable {
 	 */
 	@Override
 	public void close() {
+		close(true);
+	}
+
+	/**
+	 * Closes the writer
+	 * @param updateHeader false if the header and the end of data mark of
+	 *         the file are already up to date
+	 */
+	void close(boolean updateHeader) {
 		if (this.closed) {
 			return;
 		}
 		this.closed = true;
-		if (this.raf != null) {
+		try {
+			closeMemoFile();
+		}
+		catch (DBFException e) {
+			DBFUtils.close(this.raf);
+			DBFUtils.close(this.outputStream);
+			throw e;
+		}
+		if (this.raf != null && !updateHeader) {
+			DBFUtils.close(this.raf);
+		}
+		else if (this.raf != null) {
 			/*
 			 * everything is written already. just update the header for
 			 * record count and the END_OF_DATA mark
 			 */
 			try {
+				flushWriteBuffer();
 				this.header.numberOfRecords = this.recordCount;
 				this.raf.seek(0);
-				this.header.write(this.raf);
+				writeHeader();
 				this.raf.seek(this.raf.length());
 				this.raf.writeByte(END_OF_DATA);
 			}
@@ -330,7 +786,12 @@ public class DBFWriter extends DBFBase implements java.io.Closeable {
 		}
 		else if (this.outputStream != null) {
 			try {
-				writeToStream(this.outputStream);
+				if (this.streamingMode) {
+					finishStreaming();
+				}
+				else {
+					writeToStream(this.outputStream);
+				}
 			}
 			finally {
 				DBFUtils.close(this.outputStream);
@@ -340,64 +801,216 @@ public class DBFWriter extends DBFBase implements java.io.Closeable {
 	}
 
 
+	private void closeMemoFile() {
+		if (this.memoWriter != null) {
+			this.memoWriter.close();
+		}
+	}
+
 	private void writeRecord(DataOutput dataOutput, Object[] objectArray) throws IOException {
-		dataOutput.write((byte) ' ');
-		for (int j = 0; j < this.header.fieldArray.length; j++) {
-			/* iterate throught fields */
-			switch (this.header.fieldArray[j].getType()) {
-
-			case CHARACTER:
-				String strValue = "";
-				if (objectArray[j] != null) {
-					strValue = objectArray[j].toString();
-				}
-				dataOutput.write(DBFUtils.textPadding(strValue, getCharset(), this.header.fieldArray[j].getLength(), DBFAlignment.LEFT, (byte) ' '));
-
-				break;
-
-			case DATE:
-				if (objectArray[j] != null) {
-					GregorianCalendar calendar = new GregorianCalendar();
-					calendar.setTime((Date) objectArray[j]);
-					dataOutput.write(String.valueOf(calendar.get(Calendar.YEAR)).getBytes(StandardCharsets.US_ASCII));
-					dataOutput.write(DBFUtils.textPadding(String.valueOf(calendar.get(Calendar.MONTH) + 1),
-							StandardCharsets.US_ASCII, 2, DBFAlignment.RIGHT, (byte) '0'));
-					dataOutput.write(DBFUtils.textPadding(String.valueOf(calendar.get(Calendar.DAY_OF_MONTH)),
-							StandardCharsets.US_ASCII, 2, DBFAlignment.RIGHT, (byte) '0'));
-				} else {
-					dataOutput.write("        ".getBytes(StandardCharsets.US_ASCII));
-				}
+		dataOutput.write(getEncoder().encode(objectArray));
+	}
 
-				break;
-			case NUMERIC:
-			case FLOATING_POINT:
+	private DBFRecordEncoder getEncoder() {
+		if (this.encoder == null) {
+			this.encoder = new DBFRecordEncoder(this.header.fieldArray, getCharset(), this.header.isDB7());
+		}
+		return this.encoder;
+	}
 
-				if (objectArray[j] != null) {
-					dataOutput.write(DBFUtils.doubleFormating((Number) objectArray[j], getCharset(),
-							this.header.fieldArray[j].getLength(), this.header.fieldArray[j].getDecimalCount()));
-				} else {
-					dataOutput.write(DBFUtils.textPadding(" ", getCharset(), this.header.fieldArray[j].getLength(), DBFAlignment.RIGHT, (byte) ' '));
-				}
+	/**
+	 * Encodes a record checked with {@link #checkRecord(Object[])}, writing
+	 * the values of memo fields to the memo file
+	 * @param values fields of the record
+	 * @return the record, the array is reused by the next call
+	 */
+	byte[] encodeRecord(Object[] values) {
+		return getEncoder().encode(writeMemoValues(assignAutoincrementValues(values)));
+	}
+
+	/**
+	 * Checks that encoded records can be written with
+	 * {@link #writeEncodedRecords(byte[], int)}: fields must be set, there
+	 * can be no memo fields and records must be written to a file or to a
+	 * stream in streaming mode.
+	 */
+	void checkEncodedRecordsSupported() {
+		if (this.closed) {
+			throw new IllegalStateException("You can add records a closed DBFWriter");
+		}
+		if (this.header.fieldArray == null) {
+			throw new DBFException("Fields should be set before adding records");
+		}
+		for (DBFField field : this.header.fieldArray) {
+			if (isMemoType(field.getType())) {
+				throw new DBFException("Memo fields are not supported writing encoded records");
+			}
+			if (field.getType() == DBFDataType.AUTOINCREMENT) {
+				throw new DBFException("Autoincrement fields are not supported writing encoded records");
+			}
+		}
+		if (this.raf == null && !this.streamingMode) {
+			throw new DBFException("Encoded records can only be written to a file or in streaming mode");
+		}
+	}
 
-				break;
+	/**
+	 * Creates a new encoder for the records of this writer
+	 * @return the encoder
+	 */
+	DBFRecordEncoder newEncoder() {
+		return new DBFRecordEncoder(this.header.fieldArray, getCharset(), this.header.isDB7());
+	}
 
-			case LOGICAL:
+	/**
+	 * Writes records encoded with an encoder from {@link #newEncoder()}
+	 * @param records the encoded records
+	 * @param count the number of records
+	 */
+	void writeEncodedRecords(byte[] records, int count) throws IOException {
+		int length = count * getRecordLength();
+		if (this.raf != null) {
+			flushWriteBuffer();
+			ByteBuffer buffer = ByteBuffer.wrap(records, 0, length);
+			FileChannel channel = this.raf.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		else {
+			if (this.declaredRecordCount >= 0 && this.recordCount + count > this.declaredRecordCount) {
+				throw new DBFException("Only " + this.declaredRecordCount + " records were declared");
+			}
+			if (this.streamOutput == null) {
+				startStreaming();
+			}
+			this.streamOutput.write(records, 0, length);
+		}
+		this.recordCount += count;
+	}
 
-				if (objectArray[j] instanceof Boolean) {
-					if ((Boolean) objectArray[j]) {
-						dataOutput.write((byte) 'T');
-					} else {
-						dataOutput.write((byte) 'F');
-					}
-				} else {
-					dataOutput.write((byte) '?');
-				}
+	/**
+	 * Gets the length of the records of the file
+	 * @return the length of a record, including the deleted flag
+	 */
+	int getRecordLength() {
+		return getEncoder().getRecordLength();
+	}
 
-				break;
+	/**
+	 * Appends encoded records after the last record of the file, as counted
+	 * in the header of the file and not in this writer, so records appended
+	 * by other writers are kept. Then writes the end of data mark and the
+	 * header with the new number of records. The caller must hold the lock
+	 * of the file.
+	 * @param records buffer with the encoded records, between 0 and its
+	 *          position. It is cleared after writing.
+	 * @param count number of records in the buffer
+	 */
+	void commitRecords(ByteBuffer records, int count) throws IOException {
+		flushWriteBuffer();
+		FileChannel channel = this.raf.getChannel();
+		ByteBuffer countBytes = ByteBuffer.allocate(4);
+		while (countBytes.hasRemaining()) {
+			if (channel.read(countBytes, 4 + countBytes.position()) < 0) {
+				throw new DBFException("Unexpected end of file");
+			}
+		}
+		int fileRecords = Integer.reverseBytes(countBytes.getInt(0));
+		long position = this.header.headerLength + (long) fileRecords * getRecordLength();
+		if (records != null) {
+			records.flip();
+			while (records.hasRemaining()) {
+				position += channel.write(records, position);
+			}
+			records.clear();
+		}
+		channel.write(ByteBuffer.wrap(new byte[] {END_OF_DATA}), position);
+		this.recordCount = fileRecords + count;
+		this.header.numberOfRecords = this.recordCount;
+		this.raf.seek(0);
+		writeHeader();
+	}
 
-			default:
-				throw new DBFException("Unknown field type " + this.header.fieldArray[j].getType());
+	/**
+	 * Appends a record to the write buffer of the file, writing the buffer
+	 * to the file when it is full
+	 */
+	private void appendRecord(Object[] values) throws IOException {
+		byte[] record = getEncoder().encode(values);
+		if (this.writeBuffer == null) {
+			this.writeBuffer = ByteBuffer.allocate(Math.max(this.writeBufferSize, record.length));
+		}
+		if (this.writeBuffer.remaining() < record.length) {
+			flushWriteBuffer();
+		}
+		this.writeBuffer.put(record);
+	}
+
+	/**
+	 * Writes the buffered records at the current position of the file
+	 */
+	private void flushWriteBuffer() throws IOException {
+		if (this.writeBuffer == null || this.writeBuffer.position() == 0) {
+			return;
+		}
+		this.writeBuffer.flip();
+		FileChannel channel = this.raf.getChannel();
+		while (this.writeBuffer.hasRemaining()) {
+			channel.write(this.writeBuffer);
+		}
+		this.writeBuffer.clear();
+	}
+
+	/**
+	 * Writes the header at the current position of the file, with one write
+	 */
+	private void writeHeader() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		this.header.write(new DataOutputStream(bytes));
+		this.raf.write(bytes.toByteArray());
+	}
+
+	/**
+	 * Sets the size of the buffer used to write records to the file (default
+	 * 64KB). Records are written when the buffer is full and on close.
+	 * Only used when writing to a file.
+	 * @param writeBufferSize the size of the buffer in bytes
+	 */
+	public void setWriteBufferSize(int writeBufferSize) {
+		if (writeBufferSize <= 0) {
+			throw new IllegalArgumentException("Write buffer size must be positive");
+		}
+		if (this.writeBuffer != null) {
+			flush();
+			this.writeBuffer = null;
+		}
+		this.writeBufferSize = writeBufferSize;
+	}
+
+	/**
+	 * Writes the buffered records to the file, or to the stream in streaming
+	 * mode. The header is updated on close. The memo file, if any, is
+	 * written first, with its header, so the records written never
+	 * reference values missing from it.
+	 */
+	public void flush() {
+		if (this.closed) {
+			return;
+		}
+		try {
+			if (this.memoWriter != null) {
+				this.memoWriter.checkpoint();
 			}
+			if (this.raf != null) {
+				flushWriteBuffer();
+			}
+			else if (this.streamOutput != null) {
+				this.streamOutput.flush();
+			}
+		}
+		catch (IOException e) {
+			throw new DBFException(e.getMessage(), e);
 		}
 	}
 
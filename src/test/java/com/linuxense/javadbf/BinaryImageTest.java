@@ -54,10 +54,13 @@ public class BinaryImageTest {
 			Object[] row = null;
 			
 			row = reader.nextRecord();
-			Assert.assertEquals(16777344, ((Number) row[0]).intValue());
-			Assert.assertEquals(16777344, ((Number) row[1]).intValue());
+			Assert.assertEquals(1, ((Number) row[0]).intValue());
+			Assert.assertEquals(1, ((Number) row[1]).intValue());
 			Assert.assertEquals("Dartboard", row[2]);
-			Assert.assertEquals(889192576, ((Number) row[3]).intValue());
+			Assert.assertEquals(53, ((Number) row[3]).intValue());
+			row = reader.nextRecord();
+			Assert.assertEquals(2, ((Number) row[0]).intValue());
+			Assert.assertEquals(69, ((Number) row[3]).intValue());
 			
 			
 			DbfToTxtTest.export(reader, File.createTempFile("javadbf-test", ".txt"));
@@ -87,7 +87,7 @@ public class DBFFieldTest {
 	@Test(expected=IllegalArgumentException.class)
 	public void testTypeNotWriteSupport() {
 		DBFField field = new DBFField();
-		field.setType(DBFDataType.MEMO);
+		field.setType(DBFDataType.VARCHAR);
 	}
 	
 	@Test(expected=IllegalArgumentException.class)
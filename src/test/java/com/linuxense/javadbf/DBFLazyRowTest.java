@@ -0,0 +1,247 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFLazyRowTest {
+
+	@Test
+	public void testBooks() throws IOException {
+		assertLazySameAsEager("books.dbf", null, false);
+	}
+
+	@Test
+	public void testDeleted() throws IOException {
+		assertLazySameAsEager("test_delete.dbf", null, true);
+	}
+
+	@Test
+	public void testNullFlags() throws IOException {
+		assertLazySameAsEager("fixtures/foxpro-xsource/employees.dbf", null, false);
+	}
+
+	@Test
+	public void testMemo() throws IOException {
+		assertLazySameAsEager("fixtures/dbase_8b.dbf", "fixtures/dbase_8b.dbt", false);
+	}
+
+	@Test
+	public void testTypedGetters() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream("src/test/resources/books.dbf"));
+			reader.setLazyRows(true);
+			DBFRow row = reader.nextRow();
+			Assert.assertTrue(row instanceof DBFLazyRow);
+			Assert.assertEquals(1, row.getInt("BOOK_ID"));
+			Assert.assertEquals(row.getObject("TITLE").toString(), row.getString("TITLE"));
+			Assert.assertSame(row.getObject("DATE_PURCH"), row.getDate("DATE_PURCH"));
+			Assert.assertFalse(row.isDeleted());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testDateGetters() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(new DBFField[] {new DBFField("DATE", DBFDataType.DATE)});
+			int[][] dates = {{2023, 1, 15}, {1999, 12, 31}, {2024, 2, 29}, {2023, 2, 28}};
+			for (int[] date : dates) {
+				writer.addRecord(new Object[] {new GregorianCalendar(date[0], date[1] - 1, date[2]).getTime()});
+			}
+			writer.addRecord(new Object[] {null});
+		}
+		byte[] data = output.toByteArray();
+		// an invalid day, read as GregorianCalendar does
+		String text = new String(data, StandardCharsets.ISO_8859_1).replace("20230228", "20230230");
+		data = text.getBytes(StandardCharsets.ISO_8859_1);
+		int[] expected = {20230115, 19991231, 20240229, 20230302, 0};
+		for (boolean lazy : new boolean[] {false, true}) {
+			DBFReader reader = null;
+			try {
+				reader = new DBFReader(new ByteArrayInputStream(data));
+				reader.setLazyRows(lazy);
+				for (int value : expected) {
+					DBFRow row = reader.nextRow();
+					Assert.assertEquals(value, row.getDateAsInt("DATE"));
+					Assert.assertEquals(value, DBFRow.toDateAsInt(row.getDate(0), TimeZone.getDefault()));
+				}
+			}
+			finally {
+				DBFUtils.close(reader);
+			}
+		}
+	}
+
+	@Test
+	public void testDateGettersWithBuddhistLocale() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(new DBFField[] {new DBFField("DATE", DBFDataType.DATE)});
+			writer.addRecord(new Object[] {new GregorianCalendar(2023, 0, 15).getTime()});
+			// julian calendar, resolved by GregorianCalendar
+			writer.addRecord(new Object[] {new GregorianCalendar(1500, 2, 1).getTime()});
+		}
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(new Locale("th", "TH"));
+		try {
+			for (boolean lazy : new boolean[] {false, true}) {
+				DBFReader reader = null;
+				try {
+					reader = new DBFReader(new ByteArrayInputStream(output.toByteArray()));
+					reader.setLazyRows(lazy);
+					Assert.assertEquals(20230115, reader.nextRow().getDateAsInt(0));
+					Assert.assertEquals(15000301, reader.nextRow().getDateAsInt(0));
+				}
+				finally {
+					DBFUtils.close(reader);
+				}
+			}
+		}
+		finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void testTimestampGetters() throws IOException {
+		Date[] dates = {new Date(1673780645123L), new Date(-86400000L * 365 * 300 + 1234), new Date(0), null};
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(new DBFField[] {new DBFField("TS", DBFDataType.TIMESTAMP)});
+			for (Date date : dates) {
+				writer.addRecord(new Object[] {date});
+			}
+		}
+		for (boolean lazy : new boolean[] {false, true}) {
+			DBFReader reader = null;
+			try {
+				reader = new DBFReader(new ByteArrayInputStream(output.toByteArray()));
+				reader.setLazyRows(lazy);
+				for (Date date : dates) {
+					DBFRow row = reader.nextRow();
+					Assert.assertEquals(date != null ? date.getTime() : 0, row.getTimestampMillis("TS"));
+					Assert.assertEquals(date, row.getDate(0));
+				}
+			}
+			finally {
+				DBFUtils.close(reader);
+			}
+		}
+	}
+
+	@Test
+	public void testNumericGetters() throws IOException {
+		File file = new File("src/test/resources/fixtures/dbase_03.dbf");
+		List<DBFRow> expected = new ArrayList<>();
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				expected.add(row);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			reader.setLazyRows(true);
+			int numericFields = 0;
+			for (DBFRow expectedRow : expected) {
+				DBFRow row = reader.nextRow();
+				for (int i = 0; i < reader.getFieldCount(); i++) {
+					DBFDataType type = reader.getField(i).getType();
+					if (type == DBFDataType.NUMERIC || type == DBFDataType.FLOATING_POINT) {
+						numericFields++;
+						Assert.assertEquals(expectedRow.getInt(i), row.getInt(i));
+						Assert.assertEquals(expectedRow.getLong(i), row.getLong(i));
+						Assert.assertEquals(expectedRow.getDouble(i), row.getDouble(i), 0.0);
+					}
+				}
+			}
+			Assert.assertTrue(numericFields > 0);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private void assertLazySameAsEager(String fileName, String memoFileName, boolean showDeletedRows) throws IOException {
+		File file = new File("src/test/resources/" + fileName);
+		File memoFile = memoFileName != null ? new File("src/test/resources/" + memoFileName) : null;
+		List<Object[]> expected = new ArrayList<>();
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file), null, showDeletedRows);
+			if (memoFile != null) {
+				reader.setMemoFile(memoFile);
+			}
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				expected.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		try {
+			reader = new DBFReader(new FileInputStream(file), null, showDeletedRows);
+			if (memoFile != null) {
+				reader.setMemoFile(memoFile);
+			}
+			reader.setLazyRows(true);
+			List<DBFRow> rows = new ArrayList<>();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				rows.add(row);
+			}
+			Assert.assertEquals(expected.size(), rows.size());
+			for (int i = 0; i < rows.size(); i++) {
+				Object[] record = expected.get(i);
+				// backwards, columns are decoded in any order
+				for (int j = record.length - 1; j >= 0; j--) {
+					Assert.assertEquals(record[j], rows.get(i).getObject(j));
+				}
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+}
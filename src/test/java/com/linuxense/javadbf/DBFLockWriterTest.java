@@ -1,9 +1,11 @@
 package com.linuxense.javadbf;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -63,6 +65,184 @@ public class DBFLockWriterTest {
         Assert.assertEquals(259L, outputFile.length());
 	}
 	
+	@Test
+	public void testInterleavedWriters() throws Exception {
+		DBFField[] fields = createFields();
+		File outputFile = File.createTempFile("example", ".dbf");
+		DBFLockWriter first = new DBFLockWriter(outputFile);
+		first.setFields(fields);
+		DBFLockWriter second = new DBFLockWriter(outputFile);
+		try {
+			second.setBatchSize(2);
+			first.addRecord(createRecord(0));
+			second.addRecord(createRecord(1));
+			first.addRecords(Arrays.<Object[]>asList(createRecord(2), createRecord(3)));
+			second.addRecord(createRecord(4));
+			first.addRecords(Arrays.<Object[]>asList(createRecord(5)).iterator());
+		}
+		finally {
+			DBFUtils.close(first);
+			DBFUtils.close(second);
+		}
+		Assert.assertEquals(129L + 6 * 43 + 1, outputFile.length());
+		assertRecords(outputFile, 0, 2, 3, 1, 4, 5);
+	}
+
+	@Test
+	public void testInvalidBatchIsNotWritten() throws Exception {
+		DBFField[] fields = createFields();
+		File outputFile = File.createTempFile("example", ".dbf");
+		DBFLockWriter writer = new DBFLockWriter(outputFile);
+		try {
+			writer.setFields(fields);
+			writer.addRecords(Arrays.<Object[]>asList(createRecord(0)));
+			try {
+				writer.addRecords(Arrays.<Object[]>asList(createRecord(1), new Object[] {"2", "John Smith 2", "not a number"}));
+				Assert.fail("Invalid record added");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			writer.setBatchSize(2);
+			try {
+				writer.addRecords(Arrays.<Object[]>asList(createRecord(1), createRecord(2), createRecord(3), null).iterator());
+				Assert.fail("Invalid record added");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			writer.addRecord(createRecord(4));
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		assertRecords(outputFile, 0, 1, 2, 4);
+	}
+
+	@Test
+	public void testInvalidBatchKeepsAutoincrement() throws Exception {
+		File outputFile = File.createTempFile("example", ".dbf");
+		outputFile.delete();
+		DBFLockWriter writer = new DBFLockWriter(outputFile);
+		try {
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT),
+					new DBFField("NAME", DBFDataType.CHARACTER, 10)});
+			writer.addRecord(new Object[] {null, "first"});
+			try {
+				writer.addRecords(Arrays.<Object[]>asList(new Object[] {null, "second"},
+						new Object[] {null, "third"}, new Object[] {"not a number", "fourth"}).iterator());
+				Assert.fail("Invalid record added");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			writer.addRecord(new Object[] {null, "fifth"});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(outputFile));
+			Assert.assertEquals(2, reader.getRecordCount());
+			Assert.assertEquals(3, reader.getField(0).getNextAutoincrementValue());
+			Assert.assertArrayEquals(new Object[] {1, "first"}, reader.nextRecord());
+			Assert.assertArrayEquals(new Object[] {2, "fifth"}, reader.nextRecord());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testInterleavedAutoincrement() throws Exception {
+		File outputFile = File.createTempFile("example", ".dbf");
+		outputFile.delete();
+		DBFLockWriter first = new DBFLockWriter(outputFile);
+		first.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT),
+				new DBFField("NAME", DBFDataType.CHARACTER, 10)});
+		DBFLockWriter second = new DBFLockWriter(outputFile);
+		try {
+			first.addRecord(new Object[] {null, "a"});
+			second.addRecord(new Object[] {null, "b"});
+			first.addRecords(Arrays.<Object[]>asList(new Object[] {null, "c"}, new Object[] {null, "d"}));
+			second.setBatchSize(2);
+			second.addRecord(new Object[] {null, "e"});
+			second.addRecord(new Object[] {20, "f"});
+			first.addRecord(new Object[] {null, "g"});
+		}
+		finally {
+			DBFUtils.close(first);
+			DBFUtils.close(second);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(outputFile));
+			Assert.assertEquals(7, reader.getRecordCount());
+			Assert.assertEquals(22, reader.getField(0).getNextAutoincrementValue());
+			int[] ids = {1, 2, 3, 4, 5, 20, 21};
+			for (int i = 0; i < ids.length; i++) {
+				Assert.assertArrayEquals(new Object[] {ids[i], String.valueOf((char) ('a' + i))}, reader.nextRecord());
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testBatchSize() throws Exception {
+		DBFField[] fields = createFields();
+		File outputFile = File.createTempFile("example", ".dbf");
+		DBFLockWriter writer = new DBFLockWriter(outputFile);
+		try {
+			writer.setFields(fields);
+			writer.setBatchSize(3);
+			writer.addRecord(createRecord(0));
+			writer.addRecord(createRecord(1));
+			Assert.assertEquals(129L, outputFile.length());
+			writer.addRecord(createRecord(2));
+			Assert.assertEquals(129L + 3 * 43 + 1, outputFile.length());
+			writer.addRecord(createRecord(3));
+			writer.flush();
+			Assert.assertEquals(129L + 4 * 43 + 1, outputFile.length());
+			writer.setFlushInterval(1);
+			writer.addRecord(createRecord(4));
+			Thread.sleep(5);
+			writer.addRecord(createRecord(5));
+			Assert.assertEquals(129L + 6 * 43 + 1, outputFile.length());
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		assertRecords(outputFile, 0, 1, 2, 3, 4, 5);
+	}
+
+	private Object[] createRecord(int i) {
+		Object rowData[] = new Object[3];
+		rowData[0] = Integer.toString(i);
+		rowData[1] = "John Smith " + i;
+		rowData[2] = 1000 * (i+1) + 0.25;
+		return rowData;
+	}
+
+	private void assertRecords(File file, int... expected) throws Exception {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			Assert.assertEquals(expected.length, reader.getRecordCount());
+			for (int i : expected) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals(Integer.toString(i), row.getString("emp_code"));
+				Assert.assertEquals("John Smith " + i, row.getString("emp_name"));
+			}
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
 	private DBFField[] createFields() {
 		DBFField[] fields = new DBFField[3];
 
@@ -0,0 +1,103 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFMemoCacheTest {
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		DBFMemoCache cache = new DBFMemoCache(10);
+		cache.put(1, DBFDataType.MEMO, "ab");
+		cache.put(2, DBFDataType.MEMO, "cd");
+		Assert.assertEquals(8, cache.getSize());
+		Assert.assertEquals("ab", cache.get(1, DBFDataType.MEMO));
+		cache.put(3, DBFDataType.BINARY, new byte[] {1, 2, 3});
+		// block 2 is the least recently used
+		Assert.assertNull(cache.get(2, DBFDataType.MEMO));
+		Assert.assertEquals("ab", cache.get(1, DBFDataType.MEMO));
+		Assert.assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) cache.get(3, DBFDataType.BINARY));
+		Assert.assertNull(cache.get(3, DBFDataType.MEMO));
+		Assert.assertEquals(7, cache.getSize());
+		Assert.assertEquals(2, cache.getEntryCount());
+		Assert.assertEquals(3, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testValuesBiggerThanCache() {
+		DBFMemoCache cache = new DBFMemoCache(4);
+		cache.put(1, DBFDataType.BINARY, new byte[5]);
+		Assert.assertNull(cache.get(1, DBFDataType.BINARY));
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testBinaryValuesAreCopied() {
+		DBFMemoCache cache = new DBFMemoCache(100);
+		byte[] value = new byte[] {1, 2, 3};
+		cache.put(1, DBFDataType.BINARY, value);
+		value[0] = 9;
+		byte[] cached = (byte[]) cache.get(1, DBFDataType.BINARY);
+		Assert.assertEquals(1, cached[0]);
+		cached[1] = 9;
+		Assert.assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) cache.get(1, DBFDataType.BINARY));
+	}
+
+	@Test
+	public void testReaderWithCache() {
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/dbase_8b.dbf"));
+			DBFMemoOptions options = new DBFMemoOptions();
+			options.setCacheSize(64 * 1024);
+			reader.setMemoFile(new File("src/test/resources/fixtures/dbase_8b.dbt"), options);
+			DBFMemoCache cache = reader.getMemoCache();
+			Assert.assertNotNull(cache);
+			Object[] first = reader.getRecord(0);
+			long misses = cache.getMissCount();
+			Assert.assertTrue(misses > 0);
+			Assert.assertArrayEquals(first, reader.getRecord(0));
+			Assert.assertEquals(misses, cache.getMissCount());
+			Assert.assertEquals(misses, cache.getHitCount());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testReaderWithoutCache() {
+		DBFReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/dbase_8b.dbf"));
+			reader.setMemoFile(new File("src/test/resources/fixtures/dbase_8b.dbt"));
+			Assert.assertNull(reader.getMemoCache());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+}
@@ -19,9 +19,19 @@ License along with this library.  If not, see <http://www.gnu.org/licenses/>.
 package com.linuxense.javadbf;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class DBFMemoFileTest {
@@ -82,4 +92,222 @@ public class DBFMemoFileTest {
 	}
 	
 
+	@Test
+	public void testEndMarkBetweenBlocks() throws IOException {
+		File dbt = File.createTempFile("javadbf-memo", ".dbt");
+		dbt.deleteOnExit();
+		byte[] content = new byte[512 * 3];
+		content[20] = 0x00;
+		content[21] = 0x02;
+		Arrays.fill(content, 512, 1023, (byte) 'a');
+		content[1023] = 0x1A;
+		content[1024] = 0x1A;
+		FileOutputStream out = new FileOutputStream(dbt);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+		DBFMemoFile file = new DBFMemoFile(dbt, Charset.forName("windows-1252"));
+		try {
+			char[] expected = new char[511];
+			Arrays.fill(expected, 'a');
+			Assert.assertEquals(new String(expected), file.readText(1));
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	@Test
+	public void testIndexOfEndMark() {
+		Random random = new Random(1);
+		for (int n = 0; n < 2000; n++) {
+			byte[] data = new byte[random.nextInt(40)];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = random.nextInt(4) == 0 ? 0x1A : (byte) random.nextInt(256);
+			}
+			int from = data.length == 0 ? 0 : random.nextInt(data.length);
+			Assert.assertEquals(naiveIndexOfEndMark(data, from, data.length),
+					DBFMemoFile.indexOfEndMark(ByteBuffer.wrap(data), from, data.length));
+		}
+	}
+
+	@Test
+	public void testEndMarkAtWordBoundaries() {
+		for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+			for (int from = 0; from < 8; from++) {
+				int to = from + 24;
+				// every position, including marks split between two words and at the last two bytes
+				for (int mark = from; mark + 1 < to; mark++) {
+					byte[] data = new byte[to];
+					Arrays.fill(data, (byte) 'a');
+					data[mark] = 0x1A;
+					data[mark + 1] = 0x1A;
+					ByteBuffer buffer = ByteBuffer.wrap(data).order(order);
+					Assert.assertEquals(mark, DBFMemoFile.indexOfEndMark(buffer, from, to));
+				}
+				// isolated 0x1A bytes, at the end of each word and at the last byte
+				byte[] data = new byte[to];
+				Arrays.fill(data, (byte) 'a');
+				for (int i = from + 7; i < to; i += 8) {
+					data[i] = 0x1A;
+				}
+				data[to - 1] = 0x1A;
+				ByteBuffer buffer = ByteBuffer.wrap(data).order(order);
+				Assert.assertEquals(-1, DBFMemoFile.indexOfEndMark(buffer, from, to));
+				// the end of the range is not part of the scan
+				data[to - 2] = 0x1A;
+				Assert.assertEquals(-1, DBFMemoFile.indexOfEndMark(buffer, from, to - 1));
+				Assert.assertEquals(to - 2, DBFMemoFile.indexOfEndMark(buffer, from, to));
+			}
+		}
+	}
+
+	/**
+	 * Throughput of the end mark scan against the byte by byte loop, scanning
+	 * from every block of the fixtures as the reader does. Not run by default,
+	 * timings depend on the machine; the best of ten runs is compared.
+	 */
+	@Test
+	@Ignore("benchmark, run manually")
+	public void testEndMarkScanThroughput() throws IOException {
+		String[] names = {"src/test/resources/inventory.dbt", "src/test/resources/fixtures/dbase_83.dbt"};
+		for (String name : names) {
+			byte[] data = Files.readAllBytes(new File(name).toPath());
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			int rounds = Math.max(1, 4 * 1024 * 1024 / data.length);
+			long naiveTime = Long.MAX_VALUE;
+			long wordTime = Long.MAX_VALUE;
+			for (int iteration = 0; iteration < 10; iteration++) {
+				long start = System.nanoTime();
+				long naive = 0;
+				for (int round = 0; round < rounds; round++) {
+					for (int from = 0; from < data.length; from += 512) {
+						naive += naiveIndexOfEndMark(data, from, data.length);
+					}
+				}
+				long middle = System.nanoTime();
+				long word = 0;
+				for (int round = 0; round < rounds; round++) {
+					for (int from = 0; from < data.length; from += 512) {
+						word += DBFMemoFile.indexOfEndMark(buffer, from, data.length);
+					}
+				}
+				long end = System.nanoTime();
+				Assert.assertEquals(naive, word);
+				naiveTime = Math.min(naiveTime, middle - start);
+				wordTime = Math.min(wordTime, end - middle);
+			}
+			// the word scan must not be a regression; it is not always faster
+			Assert.assertTrue(name + ": byte by byte " + naiveTime / 1000000 + "ms, word at a time " + wordTime / 1000000 + "ms",
+					wordTime < 2 * naiveTime);
+		}
+	}
+
+	private static int naiveIndexOfEndMark(byte[] data, int from, int to) {
+		for (int i = from; i < to - 1; i++) {
+			if (data[i] == 0x1A && data[i + 1] == 0x1A) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void testReadAhead() {
+		String[][] files = {{"dbase_83.dbf", "dbase_83.dbt"}, {"dbase_8b.dbf", "dbase_8b.dbt"},
+				{"dbase_f5.dbf", "dbase_f5.fpt"}, {"dbase_30.dbf", "dbase_30.fpt"}};
+		for (String[] names : files) {
+			List<Object[]> expected = readRecords(names, 0);
+			for (int readAheadSize : new int[] {700, 64 * 1024}) {
+				List<Object[]> records = readRecords(names, readAheadSize);
+				Assert.assertEquals(expected.size(), records.size());
+				for (int i = 0; i < records.size(); i++) {
+					Assert.assertTrue(names[0] + " record " + i, Arrays.deepEquals(expected.get(i), records.get(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadAheadFromSeveralThreads() throws Exception {
+		final String[] names = {"dbase_8b.dbf", "dbase_8b.dbt"};
+		final List<Object[]> expected = readRecords(names, 0);
+		final DBFRandomAccessReader reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/" + names[0]));
+		try {
+			DBFMemoOptions options = new DBFMemoOptions();
+			options.setReadAheadSize(700);
+			reader.setMemoFile(new File("src/test/resources/fixtures/" + names[1]), options);
+			final List<Throwable> errors = new ArrayList<Throwable>();
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				// each thread scans from a different record
+				final int first = t * expected.size() / threads.length;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int n = 0; n < 50; n++) {
+								assertRows(reader.spliterator(first, expected.size()), first);
+								assertRows(reader.spliterator(0, first), 0);
+							}
+						}
+						catch (Throwable e) {
+							synchronized (errors) {
+								errors.add(e);
+							}
+						}
+					}
+
+					private void assertRows(DBFRowSpliterator rows, int index) {
+						while (rows.hasNext()) {
+							DBFRow row = rows.next();
+							Object[] record = expected.get(index++);
+							for (int j = 0; j < record.length; j++) {
+								Assert.assertTrue(Arrays.deepEquals(new Object[] {record[j]}, new Object[] {row.getObject(j)}));
+							}
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Assert.assertEquals(new ArrayList<Throwable>(), errors);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private List<Object[]> readRecords(String[] names, int readAheadSize) {
+		List<Object[]> records = new ArrayList<Object[]>();
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/" + names[0]));
+			DBFMemoOptions options = new DBFMemoOptions();
+			options.setReadAheadSize(readAheadSize);
+			reader.setMemoFile(new File("src/test/resources/fixtures/" + names[1]), options);
+			// backwards, to read before the current window
+			for (int i = reader.getRecordCount() - 1; i >= 0; i--) {
+				records.add(0, reader.getRecord(i));
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		return records;
+	}
+
+	@Test(expected = DBFException.class)
+	public void testReadAfterClose() {
+		DBFMemoFile file = new DBFMemoFile(new File("src/test/resources/fixtures/dbase_8b.dbt"), Charset.forName("windows-1252"));
+		Assert.assertEquals("Second memo", file.readText(2));
+		file.close();
+		file.readText(3);
+	}
+
 }
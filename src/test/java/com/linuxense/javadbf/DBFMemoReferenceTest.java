@@ -0,0 +1,198 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFMemoReferenceTest {
+
+	@Test
+	public void testDBase3Memo() throws IOException {
+		assertLazyEqualsEager("dbase_83.dbf", "dbase_83.dbt", false);
+	}
+
+	@Test
+	public void testDBase4Memo() throws IOException {
+		assertLazyEqualsEager("dbase_8b.dbf", "dbase_8b.dbt", false);
+	}
+
+	@Test
+	public void testFoxproMemo() throws IOException {
+		assertLazyEqualsEager("dbase_f5.dbf", "dbase_f5.fpt", false);
+		assertLazyEqualsEager("dbase_30.dbf", "dbase_30.fpt", false);
+	}
+
+	@Test
+	public void testMemoryMapped() throws IOException {
+		assertLazyEqualsEager("dbase_83.dbf", "dbase_83.dbt", true);
+		assertLazyEqualsEager("dbase_8b.dbf", "dbase_8b.dbt", true);
+		assertLazyEqualsEager("dbase_f5.dbf", "dbase_f5.fpt", true);
+		assertLazyEqualsEager("dbase_30.dbf", "dbase_30.fpt", true);
+	}
+
+	@Test
+	public void testMemoryMappedSegments() throws IOException {
+		String[][] files = {{"dbase_83.dbf", "dbase_83.dbt"}, {"dbase_f5.dbf", "dbase_f5.fpt"}};
+		DBFMemoOptions options = new DBFMemoOptions();
+		options.setMemoryMapped(true);
+		for (String[] names : files) {
+			DBFRandomAccessReader reader = null;
+			// segments smaller than the values and not aligned with the blocks
+			DBFMemoFile mapped = null;
+			try {
+				reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/" + names[0]));
+				DBFMemoOptions lazyOptions = new DBFMemoOptions();
+				lazyOptions.setLazy(true);
+				File memo = new File("src/test/resources/fixtures/" + names[1]);
+				reader.setMemoFile(memo, lazyOptions);
+				mapped = new DBFMemoFile(memo, reader.getCharset(), options, 300);
+				Object[] record;
+				while ((record = reader.nextRecord()) != null) {
+					for (Object value : record) {
+						if (value instanceof DBFMemoReference) {
+							DBFMemoReference reference = (DBFMemoReference) value;
+							byte[] bytes = reference.getBytes();
+							DBFMemoFile.MemoItem item = mapped.locate(reference.getBlock(), DBFDataType.MEMO);
+							Assert.assertEquals(bytes.length, item.length);
+							Assert.assertArrayEquals(bytes, mapped.readBytes(item));
+							Assert.assertArrayEquals(bytes, toArray(mapped.readBuffer(item)));
+							Assert.assertEquals(reference.getString(), mapped.readData(reference.getBlock(), DBFDataType.MEMO));
+						}
+					}
+				}
+			}
+			finally {
+				DBFUtils.close(reader);
+				DBFUtils.close(mapped);
+			}
+		}
+	}
+
+	@Test
+	public void testReference() throws IOException {
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/dbase_83.dbf"));
+			DBFMemoOptions options = new DBFMemoOptions();
+			options.setLazy(true);
+			reader.setMemoFile(new File("src/test/resources/fixtures/dbase_83.dbt"), options);
+			DBFRow row = reader.getRow(0);
+			DBFMemoReference reference = (DBFMemoReference) row.getObject("DESC");
+			Assert.assertEquals(1, reference.getBlock());
+			Assert.assertEquals(DBFDataType.MEMO, reference.getType());
+			Assert.assertEquals(reference.getString(), row.getString("DESC"));
+			Assert.assertTrue(reference.getString().startsWith("Our Original assortment"));
+			Assert.assertEquals(reference.getString().length(), reference.getLength());
+
+			InputStream in = reference.getInputStream();
+			Assert.assertEquals(reference.getLength(), in.available());
+			Assert.assertEquals('O', in.read());
+			Assert.assertEquals(3, in.skip(3));
+			Assert.assertEquals('O', in.read());
+			Assert.assertEquals(reference.getLength() - 5, in.skip(Long.MAX_VALUE));
+			Assert.assertEquals(-1, in.read());
+			Assert.assertEquals(-1, in.read(new byte[10], 0, 10));
+			in.close();
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private void assertLazyEqualsEager(String dbf, String memo, boolean memoryMapped) throws IOException {
+		List<Object[]> expected = new ArrayList<Object[]>();
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/" + dbf));
+			reader.setMemoFile(new File("src/test/resources/fixtures/" + memo));
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				expected.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		int references = 0;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/fixtures/" + dbf));
+			DBFMemoOptions options = new DBFMemoOptions();
+			options.setLazy(true);
+			options.setMemoryMapped(memoryMapped);
+			reader.setMemoFile(new File("src/test/resources/fixtures/" + memo), options);
+			for (Object[] eager : expected) {
+				Object[] lazy = reader.nextRecord();
+				Assert.assertNotNull(lazy);
+				for (int i = 0; i < eager.length; i++) {
+					if (!(lazy[i] instanceof DBFMemoReference)) {
+						Assert.assertEquals(eager[i], lazy[i]);
+						continue;
+					}
+					references++;
+					DBFMemoReference reference = (DBFMemoReference) lazy[i];
+					byte[] bytes = reference.getBytes();
+					Assert.assertEquals(bytes.length, reference.getLength());
+					Assert.assertArrayEquals(bytes, readAll(reference.getInputStream()));
+					ByteBuffer buffer = reference.getByteBuffer();
+					Assert.assertTrue(buffer.isReadOnly());
+					Assert.assertEquals(memoryMapped && bytes.length > 0, buffer.isDirect());
+					Assert.assertArrayEquals(bytes, toArray(buffer));
+					if (eager[i] instanceof String) {
+						Assert.assertEquals(eager[i], reference.getString());
+						Assert.assertEquals(eager[i], new String(bytes, reader.getCharset()));
+					}
+					else {
+						Assert.assertArrayEquals((byte[]) eager[i], bytes);
+					}
+				}
+			}
+			Assert.assertNull(reader.nextRecord());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		Assert.assertTrue(references > 0);
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] data = new byte[buffer.remaining()];
+		buffer.duplicate().get(data);
+		return data;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[100];
+		int readed;
+		while ((readed = in.read(buffer)) != -1) {
+			out.write(buffer, 0, readed);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,238 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFParallelWriterTest {
+
+	private static final int RECORDS = 5000;
+
+	@Test
+	public void testSameOutputAsDBFWriter() throws Exception {
+		Date date = new Date();
+		File expected = File.createTempFile("parallel", ".dbf");
+		File output = File.createTempFile("parallel", ".dbf");
+		expected.delete();
+		output.delete();
+		DBFWriter writer = new DBFWriter(expected);
+		try {
+			writer.setFields(createFields());
+			for (int i = 0; i < RECORDS; i++) {
+				writer.addRecord(createRecord(i, date));
+			}
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFWriter target = new DBFWriter(output);
+		target.setFields(createFields());
+		DBFParallelWriter parallel = new DBFParallelWriter(target, 4);
+		try {
+			parallel.setBatchSize(100);
+			Object[] values = new Object[4];
+			for (int i = 0; i < RECORDS; i++) {
+				// the array is reused
+				System.arraycopy(createRecord(i, date), 0, values, 0, values.length);
+				parallel.addRecord(values);
+			}
+		}
+		finally {
+			DBFUtils.close(parallel);
+		}
+		Assert.assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(output.toPath()));
+	}
+
+	@Test
+	public void testStreamingMode() throws Exception {
+		Date date = new Date();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(expected)) {
+			writer.setFields(createFields());
+			for (int i = 0; i < RECORDS; i++) {
+				writer.addRecord(createRecord(i, date));
+			}
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DBFWriter target = new DBFWriter(output);
+		target.setFields(createFields());
+		target.setStreamingMode(true);
+		target.setRecordCount(RECORDS);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (DBFParallelWriter parallel = new DBFParallelWriter(target, executor)) {
+			for (int i = 0; i < RECORDS; i++) {
+				parallel.addRecord(createRecord(i, date));
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		Assert.assertArrayEquals(expected.toByteArray(), output.toByteArray());
+	}
+
+	@Test
+	public void testUnorderedProducers() throws Exception {
+		File output = File.createTempFile("parallel", ".dbf");
+		output.delete();
+		DBFWriter target = new DBFWriter(output);
+		target.setFields(createFields());
+		final DBFParallelWriter parallel = new DBFParallelWriter(target, 3);
+		final Date date = new Date();
+		try {
+			parallel.setOrdered(false);
+			parallel.setBatchSize(64);
+			Thread[] producers = new Thread[4];
+			for (int t = 0; t < producers.length; t++) {
+				final int first = t * RECORDS;
+				producers[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i = first; i < first + RECORDS; i++) {
+							parallel.addRecord(createRecord(i, date));
+						}
+					}
+				};
+				producers[t].start();
+			}
+			for (Thread producer : producers) {
+				producer.join();
+			}
+		}
+		finally {
+			DBFUtils.close(parallel);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(output));
+			Assert.assertEquals(4 * RECORDS, reader.getRecordCount());
+			Set<Integer> ids = new HashSet<>();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				int id = row.getInt("ID");
+				Assert.assertEquals("Name " + id, row.getString("NAME"));
+				Assert.assertTrue(ids.add(id));
+			}
+			Assert.assertEquals(4 * RECORDS, ids.size());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testInvalidRecord() throws Exception {
+		DBFWriter target = new DBFWriter(new ByteArrayOutputStream());
+		target.setFields(createFields());
+		target.setStreamingMode(true);
+		DBFParallelWriter parallel = new DBFParallelWriter(target, 2);
+		try {
+			parallel.addRecord(createRecord(0, new Date()));
+			parallel.addRecord(new Object[] {"not a number", null, null, null});
+			Assert.fail("Invalid record added");
+		}
+		catch (DBFException e) {
+			// expected
+		}
+		finally {
+			DBFUtils.close(parallel);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testInterruptedWhileAdding() throws Exception {
+		File output = File.createTempFile("parallel", ".dbf");
+		output.delete();
+		DBFWriter target = new DBFWriter(output);
+		target.setFields(createFields());
+		Date date = new Date();
+		DBFParallelWriter parallel = new DBFParallelWriter(target, 2);
+		try {
+			parallel.setBatchSize(1);
+			parallel.addRecord(createRecord(0, date));
+			Thread.currentThread().interrupt();
+			try {
+				parallel.addRecord(createRecord(-1, date));
+				Assert.fail("Record added while interrupted");
+			}
+			catch (DBFException e) {
+				Assert.assertTrue(Thread.interrupted());
+			}
+			parallel.addRecord(createRecord(1, date));
+		}
+		finally {
+			DBFUtils.close(parallel);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(output));
+			Assert.assertEquals(2, reader.getRecordCount());
+			Assert.assertEquals(0, reader.nextRow().getInt("ID"));
+			Assert.assertEquals(1, reader.nextRow().getInt("ID"));
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testRequiresFileOrStreaming() {
+		DBFWriter target = new DBFWriter(new ByteArrayOutputStream());
+		target.setFields(createFields());
+		new DBFParallelWriter(target, 2);
+	}
+
+	@Test(expected = DBFException.class)
+	public void testMemoFieldsNotSupported() throws Exception {
+		File output = File.createTempFile("parallel", ".dbf");
+		output.delete();
+		DBFWriter target = new DBFWriter(output);
+		try {
+			target.setFields(new DBFField[] {new DBFField("NOTES", DBFDataType.MEMO, 10)});
+			new DBFParallelWriter(target, 2);
+		}
+		finally {
+			DBFUtils.close(target);
+		}
+	}
+
+	private static DBFField[] createFields() {
+		return new DBFField[] {
+			new DBFField("ID", DBFDataType.NUMERIC, 10),
+			new DBFField("NAME", DBFDataType.CHARACTER, 20),
+			new DBFField("AMOUNT", DBFDataType.NUMERIC, 12, 2),
+			new DBFField("CREATED", DBFDataType.DATE)
+		};
+	}
+
+	private static Object[] createRecord(int i, Date date) {
+		return new Object[] {i, "Name " + i, new BigDecimal(i).movePointLeft(2), date};
+	}
+}
@@ -0,0 +1,309 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFPredicateTest {
+
+	private static final String DBASE_03 = "src/test/resources/fixtures/dbase_03.dbf";
+	private static final String BOOKS = "src/test/resources/books.dbf";
+
+	private interface RowCheck {
+		boolean matches(DBFRow row);
+	}
+
+	@Test
+	public void testEqualCharacter() throws IOException {
+		assertFilter(DBASE_03, DBFPredicate.equal("Condition", "Good"), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				return "Good".equals(row.getString("Condition"));
+			}
+		});
+	}
+
+	@Test
+	public void testStartsWith() throws IOException {
+		assertFilter(BOOKS, DBFPredicate.startsWith("title", "The"), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				return row.getString("TITLE").startsWith("The");
+			}
+		});
+	}
+
+	@Test
+	public void testBetweenNumeric() throws IOException {
+		assertFilter(DBASE_03, DBFPredicate.between("Max_PDOP", 4.9, new BigDecimal("5.3")), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				BigDecimal value = row.getBigDecimal("Max_PDOP");
+				return value != null && value.compareTo(new BigDecimal("4.9")) >= 0 && value.compareTo(new BigDecimal("5.3")) <= 0;
+			}
+		});
+		assertFilter(DBASE_03, DBFPredicate.equal("Northing", new BigDecimal("557904.898000")), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				BigDecimal value = row.getBigDecimal("Northing");
+				return value != null && value.compareTo(new BigDecimal("557904.898")) == 0;
+			}
+		});
+	}
+
+	@Test
+	public void testIsNull() throws IOException {
+		assertFilter(DBASE_03, DBFPredicate.isNull("Std_Dev"), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				return row.getObject("Std_Dev") == null;
+			}
+		});
+	}
+
+	@Test
+	public void testDateAndLogicalOperators() throws IOException {
+		DBFPredicate predicate = DBFPredicate.or(
+				DBFPredicate.and(
+						DBFPredicate.between("DATE_PURCH", "19940101", null),
+						DBFPredicate.not(DBFPredicate.equal("COVERTYPE", "Hard"))),
+				DBFPredicate.between("PAGES", null, 300));
+		assertFilter(BOOKS, predicate, new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				Date date = row.getDate("DATE_PURCH");
+				boolean recent = date != null && new SimpleDateFormat("yyyyMMdd").format(date).compareTo("19940101") >= 0;
+				return (recent && !"Hard".equals(row.getString("COVERTYPE"))) || row.getInt("PAGES") <= 300;
+			}
+		});
+	}
+
+	@Test
+	public void testDecodedType() throws IOException {
+		assertFilter(BOOKS, DBFPredicate.between("PURCHASE_P", 10, 25), new RowCheck() {
+			@Override
+			public boolean matches(DBFRow row) {
+				BigDecimal value = row.getBigDecimal("PURCHASE_P");
+				return value.compareTo(BigDecimal.TEN) >= 0 && value.compareTo(new BigDecimal(25)) <= 0;
+			}
+		});
+	}
+
+	@Test
+	public void testDeleted() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream("src/test/resources/test_delete.dbf"), null, true);
+			reader.setFilter(DBFPredicate.deleted());
+			DBFRow row = reader.nextRow();
+			Assert.assertTrue(row.isDeleted());
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testRandomAccessReader() throws IOException {
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File(BOOKS));
+			reader.setFilter(DBFPredicate.equal("BOOK_ID", 3));
+			Assert.assertNull(reader.getRow(0));
+			Assert.assertEquals(3, reader.getRow(2).getInt("BOOK_ID"));
+			reader.seek(0);
+			Assert.assertEquals(3, reader.nextRow().getInt("BOOK_ID"));
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testBetweenBinary() throws IOException {
+		File dbf = File.createTempFile("predicate", ".dbf");
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.deleteOnExit();
+		fpt.deleteOnExit();
+		byte[][] values = {{1, 2}, {(byte) 0x80}, {1, 2, 0}, {0x7F, 0}, {1}};
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.NUMERIC, 5),
+					new DBFField("DATA", DBFDataType.BLOB)});
+			writer.setMemoFile(fpt);
+			for (int i = 0; i < values.length; i++) {
+				writer.addRecord(new Object[] {i, values[i]});
+			}
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(fpt);
+			// unsigned: 0x80 is after 0x7F
+			reader.setFilter(DBFPredicate.between("DATA", new byte[] {1, 2}, new byte[] {0x7F, 0}));
+			List<Integer> ids = new ArrayList<>();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				ids.add(row.getInt("ID"));
+			}
+			Assert.assertEquals(Arrays.asList(0, 2, 3), ids);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testDoubleNotANumber() throws IOException {
+		File dbf = writeBinaryNumbers();
+		// NaN sorts after every number, as in Double.compare
+		Assert.assertEquals(Arrays.asList(0, 1), filterIds(dbf, DBFPredicate.between("D", 0.0, 2.0)));
+		Assert.assertEquals(Arrays.asList(2), filterIds(dbf, DBFPredicate.between("D", 3.0, null)));
+		Assert.assertEquals(Arrays.asList(1), filterIds(dbf, DBFPredicate.equal("D", new BigDecimal("1.5"))));
+	}
+
+	@Test
+	public void testFractionalIntegerTarget() throws IOException {
+		File dbf = writeBinaryNumbers();
+		Assert.assertEquals(Arrays.<Integer>asList(), filterIds(dbf, DBFPredicate.equal("L", 2.5)));
+		Assert.assertEquals(Arrays.asList(1), filterIds(dbf, DBFPredicate.equal("L", 2.0)));
+		Assert.assertEquals(Arrays.asList(1, 2), filterIds(dbf, DBFPredicate.between("L", 1.5, 3.5)));
+		Assert.assertEquals(Arrays.asList(0), filterIds(dbf, DBFPredicate.between("L", null, 1.9)));
+		Assert.assertEquals(Arrays.<Integer>asList(), filterIds(dbf, DBFPredicate.between("L", 1.1, 1.9)));
+	}
+
+	@Test
+	public void testDBase7Integer() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream("src/test/resources/inventory.dbf"));
+			reader.setFilter(DBFPredicate.between("Qty", 100, 200));
+			DBFRow row = reader.nextRow();
+			Assert.assertEquals("Sailboat", row.getString("Description"));
+			Assert.assertEquals(150, row.getInt("Qty"));
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private File writeBinaryNumbers() throws IOException {
+		File dbf = File.createTempFile("predicate", ".dbf");
+		dbf.deleteOnExit();
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.NUMERIC, 5),
+					new DBFField("D", DBFDataType.DOUBLE), new DBFField("L", DBFDataType.LONG)});
+			writer.addRecord(new Object[] {0, 0.5, 1});
+			writer.addRecord(new Object[] {1, 1.5, 2});
+			writer.addRecord(new Object[] {2, Double.NaN, 3});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		return dbf;
+	}
+
+	private List<Integer> filterIds(File dbf, DBFPredicate predicate) throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setFilter(predicate);
+			List<Integer> ids = new ArrayList<>();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				ids.add(row.getInt("ID"));
+			}
+			return ids;
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected = DBFFieldNotFoundException.class)
+	public void testUnknownField() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(BOOKS));
+			reader.setFilter(DBFPredicate.isNull("NOT_A_FIELD"));
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private void assertFilter(String fileName, DBFPredicate predicate, RowCheck check) throws IOException {
+		List<DBFRow> expected = new ArrayList<>();
+		DBFReader reader = null;
+		int fieldCount;
+		try {
+			reader = new DBFReader(new FileInputStream(fileName));
+			fieldCount = reader.getFieldCount();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				if (check.matches(row)) {
+					expected.add(row);
+				}
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		Assert.assertFalse(expected.isEmpty());
+		try {
+			reader = new DBFReader(new FileInputStream(fileName));
+			reader.setFilter(predicate);
+			List<DBFRow> rows = new ArrayList<>();
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				rows.add(row);
+			}
+			Assert.assertEquals(expected.size(), rows.size());
+			for (int i = 0; i < rows.size(); i++) {
+				for (int j = 0; j < fieldCount; j++) {
+					Assert.assertEquals(expected.get(i).getObject(j), rows.get(i).getObject(j));
+				}
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFRandomAccessReaderTest {
+
+	@Test
+	public void testDBase03() throws IOException {
+		assertSameAsSequential("fixtures/dbase_03.dbf", null);
+	}
+
+	@Test
+	public void testDBase30() throws IOException {
+		assertSameAsSequential("fixtures/dbase_30.dbf", "fixtures/dbase_30.fpt");
+	}
+
+	@Test
+	public void testDBase31() throws IOException {
+		assertSameAsSequential("fixtures/dbase_31.dbf", null);
+	}
+
+	@Test
+	public void testDBase7() throws IOException {
+		assertSameAsSequential("fixtures/dbase_7.dbf", null);
+	}
+
+	@Test
+	public void testDBase83() throws IOException {
+		assertSameAsSequential("fixtures/dbase_83.dbf", "fixtures/dbase_83.dbt");
+	}
+
+	@Test
+	public void testDBase8b() throws IOException {
+		assertSameAsSequential("fixtures/dbase_8b.dbf", "fixtures/dbase_8b.dbt");
+	}
+
+	@Test
+	public void testDBaseF5() throws IOException {
+		assertSameAsSequential("fixtures/dbase_f5.dbf", "fixtures/dbase_f5.fpt");
+	}
+
+	@Test
+	public void testDeletedRows() throws IOException {
+		File file = new File("src/test/resources/test_delete.dbf");
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(file, null, true);
+			int deleted = 0;
+			for (int i = 0; i < reader.getAvailableRecordCount(); i++) {
+				DBFRow row = reader.getRow(i);
+				Assert.assertEquals(reader.isDeleted(i), row.getBoolean("deleted"));
+				if (reader.isDeleted(i)) {
+					deleted++;
+				}
+			}
+			Assert.assertEquals(1, deleted);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		try {
+			reader = new DBFRandomAccessReader(file);
+			for (int i = 0; i < reader.getAvailableRecordCount(); i++) {
+				Assert.assertEquals(reader.isDeleted(i), reader.getRecord(i) == null);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testSeekAndIterate() throws IOException {
+		File file = new File("src/test/resources/provincias_es.dbf");
+		List<Object[]> expected = readAll(file, null);
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(file);
+			reader.seek(10);
+			Assert.assertArrayEquals(expected.get(10), reader.nextRecord());
+			Assert.assertArrayEquals(expected.get(11), reader.nextRecord());
+
+			reader.seek(expected.size() - 1);
+			Assert.assertArrayEquals(expected.get(expected.size() - 1), reader.nextRecord());
+			Assert.assertNull(reader.nextRecord());
+
+			Iterator<DBFRow> it = reader.iterator(20, 30);
+			int i = 20;
+			while (it.hasNext()) {
+				DBFRow row = it.next();
+				Assert.assertEquals(expected.get(i)[0], row.getObject(0));
+				i++;
+			}
+			Assert.assertEquals(30, i);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIndex() {
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/provincias_es.dbf"));
+			reader.getRecord(reader.getAvailableRecordCount());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testFileNotFound() {
+		new DBFRandomAccessReader(new File("/this/file/doesnont/exists"));
+	}
+
+	private void assertSameAsSequential(String fileName, String memoFileName) throws IOException {
+		File file = new File("src/test/resources/" + fileName);
+		File memoFile = memoFileName != null ? new File("src/test/resources/" + memoFileName) : null;
+		List<Object[]> expected = readAll(file, memoFile);
+
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(file);
+			if (memoFile != null) {
+				reader.setMemoFile(memoFile);
+			}
+			List<Object[]> records = new ArrayList<>();
+			// backwards, to be sure records don't depend on previous reads
+			for (int i = reader.getAvailableRecordCount() - 1; i >= 0; i--) {
+				Object[] record = reader.getRecord(i);
+				if (record != null) {
+					records.add(0, record);
+				}
+			}
+			Assert.assertEquals(expected.size(), records.size());
+			for (int i = 0; i < records.size(); i++) {
+				Assert.assertArrayEquals(expected.get(i), records.get(i));
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private List<Object[]> readAll(File file, File memoFile) throws IOException {
+		List<Object[]> records = new ArrayList<>();
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new BufferedInputStream(new FileInputStream(file)));
+			if (memoFile != null) {
+				reader.setMemoFile(memoFile);
+			}
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				records.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		return records;
+	}
+}
@@ -23,6 +23,8 @@ import static org.junit.Assert.assertNull;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -144,4 +146,138 @@ public class DBFReaderTest {
 		}
 	}
 
+	@Test
+	public void testRecordBufferSize() throws IOException {
+		File file = new File("src/test/resources/provincias_es.dbf");
+		List<Object[]> expected = new ArrayList<>();
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				expected.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			Assert.assertArrayEquals(expected.get(0), reader.nextRecord());
+			reader.setRecordBufferSize(7);
+			Object[] values = new Object[reader.getFieldCount()];
+			for (int i = 1; i < expected.size(); i++) {
+				Assert.assertSame(values, reader.nextRecord(values));
+				Assert.assertArrayEquals(expected.get(i), values);
+			}
+			assertNull(reader.nextRecord(values));
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNextRecordInvalidArray() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(new File("src/test/resources/provincias_es.dbf")));
+			reader.nextRecord(new Object[reader.getFieldCount() + 1]);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testNullFlagsWithDeletedField() throws IOException {
+		File file = new File("src/test/resources/fixtures/foxpro-xsource/employees.dbf");
+		DBFReader reader = null;
+		DBFReader readerWithDeleted = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			readerWithDeleted = new DBFReader(new FileInputStream(file), null, true);
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				Object[] recordWithDeleted = readerWithDeleted.nextRecord();
+				Assert.assertEquals(record.length + 1, recordWithDeleted.length);
+				for (int i = 0; i < record.length; i++) {
+					Assert.assertEquals(record[i], recordWithDeleted[i + 1]);
+				}
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+			DBFUtils.close(readerWithDeleted);
+		}
+	}
+
+	@Test
+	public void testProjection() throws IOException {
+		File file = new File("src/test/resources/books.dbf");
+		List<Object[]> expected = new ArrayList<>();
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			Object[] record;
+			while ((record = reader.nextRecord()) != null) {
+				expected.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			reader.setProjection("PAGES", "title");
+			Assert.assertEquals(2, reader.getFieldCount());
+			Assert.assertEquals("PAGES", reader.getField(0).getName());
+			Assert.assertEquals("TITLE", reader.getField(1).getName());
+			for (Object[] record : expected) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals(record[9], row.getObject(0));
+				Assert.assertEquals(record[1], row.getString("TITLE"));
+				Assert.assertEquals(((Number) record[9]).intValue(), row.getInt("pages"));
+			}
+			assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testProjectionByIndexWithDeleted() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream("src/test/resources/test_delete.dbf"), null, true);
+			reader.setProjection(1, 0);
+			Assert.assertEquals("deleted", reader.getField(1).getName());
+			int deleted = 0;
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				Assert.assertEquals(row.getBoolean(1), row.isDeleted());
+				if (row.isDeleted()) {
+					deleted++;
+				}
+			}
+			Assert.assertEquals(1, deleted);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected=DBFFieldNotFoundException.class)
+	public void testProjectionUnknownField() throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream("src/test/resources/books.dbf"));
+			reader.setProjection("TITLE", "NOT_A_FIELD");
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
 }
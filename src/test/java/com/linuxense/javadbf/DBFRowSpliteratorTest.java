@@ -0,0 +1,139 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFRowSpliteratorTest {
+
+	@Test
+	public void testSplit() {
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(new File("src/test/resources/provincias_es.dbf"));
+			DBFRowSpliterator suffix = reader.spliterator();
+			Assert.assertEquals(reader.getAvailableRecordCount(), suffix.estimateSize());
+			DBFRowSpliterator prefix = suffix.trySplit();
+			Assert.assertNotNull(prefix);
+			Assert.assertEquals(reader.getAvailableRecordCount(), prefix.estimateSize() + suffix.estimateSize());
+
+			DBFRowSpliterator single = reader.spliterator(3, 4);
+			Assert.assertNull(single.trySplit());
+			Assert.assertEquals(reader.getRow(3).getObject(0), single.next().getObject(0));
+			Assert.assertFalse(single.hasNext());
+			Assert.assertEquals(0, single.estimateSize());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testParallelProvincias() throws IOException {
+		assertParallelSameAsSequential("provincias_es.dbf", null, false);
+	}
+
+	@Test
+	public void testParallelDeleted() throws IOException {
+		assertParallelSameAsSequential("test_delete.dbf", null, false);
+		assertParallelSameAsSequential("test_delete.dbf", null, true);
+	}
+
+	@Test
+	public void testParallelMemo() throws IOException {
+		assertParallelSameAsSequential("fixtures/dbase_83.dbf", "fixtures/dbase_83.dbt", false);
+	}
+
+	private void assertParallelSameAsSequential(String fileName, String memoFileName, boolean showDeletedRows) throws IOException {
+		File file = new File("src/test/resources/" + fileName);
+		File memoFile = memoFileName != null ? new File("src/test/resources/" + memoFileName) : null;
+		List<Object[]> expected = new ArrayList<>();
+		DBFReader sequentialReader = null;
+		try {
+			sequentialReader = new DBFReader(new FileInputStream(file), null, showDeletedRows);
+			if (memoFile != null) {
+				sequentialReader.setMemoFile(memoFile);
+			}
+			Object[] record;
+			while ((record = sequentialReader.nextRecord()) != null) {
+				expected.add(record);
+			}
+		}
+		finally {
+			DBFUtils.close(sequentialReader);
+		}
+
+		DBFRandomAccessReader reader = null;
+		try {
+			reader = new DBFRandomAccessReader(file, null, showDeletedRows);
+			if (memoFile != null) {
+				reader.setMemoFile(memoFile);
+			}
+			List<DBFRow> rows = new ForkJoinPool(4).invoke(new ReadTask(reader.spliterator()));
+			Assert.assertEquals(expected.size(), rows.size());
+			for (int i = 0; i < rows.size(); i++) {
+				Object[] record = expected.get(i);
+				for (int j = 0; j < record.length; j++) {
+					Assert.assertEquals(record[j], rows.get(i).getObject(j));
+				}
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private static class ReadTask extends RecursiveTask<List<DBFRow>> {
+		private static final long serialVersionUID = 1L;
+		private final DBFRowSpliterator spliterator;
+
+		ReadTask(DBFRowSpliterator spliterator) {
+			this.spliterator = spliterator;
+		}
+
+		@Override
+		protected List<DBFRow> compute() {
+			if (this.spliterator.estimateSize() > 4) {
+				DBFRowSpliterator prefix = this.spliterator.trySplit();
+				if (prefix != null) {
+					ReadTask first = new ReadTask(prefix);
+					first.fork();
+					List<DBFRow> second = new ReadTask(this.spliterator).compute();
+					List<DBFRow> rows = first.join();
+					rows.addAll(second);
+					return rows;
+				}
+			}
+			List<DBFRow> rows = new ArrayList<>();
+			while (this.spliterator.hasNext()) {
+				rows.add(this.spliterator.next());
+			}
+			return rows;
+		}
+	}
+}
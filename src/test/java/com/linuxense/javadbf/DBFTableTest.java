@@ -0,0 +1,562 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFTableTest {
+
+	private static final String DBASE_03 = "src/test/resources/fixtures/dbase_03.dbf";
+
+	@Test
+	public void testUpdateRecordAndField() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		Object[][] before = readAll(file);
+		DBFTable table = new DBFTable(file);
+		try {
+			Assert.assertEquals(before.length, table.getRecordCount());
+			Assert.assertEquals("TITLE", table.getField(1).getName());
+			Object[] values = before[2].clone();
+			values[1] = "A new title";
+			table.updateRecord(2, values);
+			table.updateField(4, "PAGES", 123);
+			table.updateField(5, 1, null);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Object[][] after = readAll(file);
+		Assert.assertEquals(before.length, after.length);
+		for (int i = 0; i < before.length; i++) {
+			for (int j = 0; j < before[i].length; j++) {
+				Object expected = before[i][j];
+				if (i == 2 && j == 1) {
+					expected = "A new title";
+				}
+				else if (i == 4 && "PAGES".equals(fieldName(file, j))) {
+					expected = 123;
+				}
+				else if (i == 5 && j == 1) {
+					// null text is written as spaces
+					expected = "";
+				}
+				assertValue(expected, after[i][j]);
+			}
+		}
+	}
+
+	@Test
+	public void testDeleteAndUndelete() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		long length = file.length();
+		DBFTable table = new DBFTable(file);
+		try {
+			table.markDeleted(1);
+			table.markDeleted(3);
+			Assert.assertTrue(table.isDeleted(1));
+			table.undelete(1);
+			Assert.assertFalse(table.isDeleted(1));
+			Assert.assertTrue(table.isDeleted(3));
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Assert.assertEquals(length, file.length());
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file), null, true);
+			int i = 0;
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				Assert.assertEquals(i == 3, row.isDeleted());
+				i++;
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testLastUpdateDate() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(1);
+			raf.write(new byte[] {90, 1, 1});
+		}
+		DBFTable table = new DBFTable(file);
+		try {
+			table.markDeleted(0);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Calendar today = new GregorianCalendar();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(1);
+			Assert.assertEquals(today.get(Calendar.YEAR) - 1900, raf.readByte());
+			Assert.assertEquals(today.get(Calendar.MONTH) + 1, raf.readByte());
+			Assert.assertEquals(today.get(Calendar.DAY_OF_MONTH), raf.readByte());
+		}
+	}
+
+	@Test
+	public void testInvalidUpdates() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		DBFTable table = new DBFTable(file);
+		try {
+			try {
+				table.updateField(table.getRecordCount(), 1, "x");
+				Assert.fail("Invalid index accepted");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			try {
+				table.updateField(0, 1, new Date());
+				Assert.fail("Invalid value accepted");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			try {
+				table.updateField(0, "NOT_A_FIELD", "x");
+				Assert.fail("Invalid field accepted");
+			}
+			catch (DBFFieldNotFoundException e) {
+				// expected
+			}
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+	}
+
+	@Test
+	public void testDeleteWhere() throws IOException {
+		File file = copy(DBASE_03);
+		int condition = fieldIndex(file, "Condition");
+		Object[][] before = readAll(file);
+		int goodCount = 0;
+		for (Object[] record : before) {
+			if ("Good".equals(record[condition])) {
+				goodCount++;
+			}
+		}
+		Assert.assertTrue(goodCount > 1);
+		Assert.assertEquals("Good", before[1][condition]);
+		DBFTable table = new DBFTable(file);
+		try {
+			table.markDeleted(1);
+			Assert.assertEquals(goodCount - 1, table.deleteWhere(DBFPredicate.equal("Condition", "Good")));
+			Assert.assertEquals(0, table.deleteWhere(DBFPredicate.equal("Condition", "Good")));
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			int count = 0;
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				Assert.assertNotEquals("Good", row.getString("Condition"));
+				count++;
+			}
+			Assert.assertEquals(before.length - goodCount, count);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testUpdateWhere() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		Object[][] before = readAll(file);
+		DBFTable table = new DBFTable(file);
+		int updated;
+		try {
+			updated = table.updateWhere(DBFPredicate.between("PAGES", null, 300), "COVERTYPE", "Cheap");
+			Assert.assertEquals(before.length, table.updateWhere(null, "DATE_PURCH", null));
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Assert.assertTrue(updated > 0);
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			int count = 0;
+			for (Object[] record : before) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals(record[0], row.getObject(0));
+				Assert.assertNull(row.getDate("DATE_PURCH"));
+				if (row.getInt("PAGES") <= 300) {
+					Assert.assertEquals("Cheap", row.getString("COVERTYPE"));
+					count++;
+				}
+				else {
+					Assert.assertNotEquals("Cheap", row.getString("COVERTYPE"));
+				}
+			}
+			Assert.assertEquals(updated, count);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testPack() throws IOException {
+		File file = copy("src/test/resources/books.dbf");
+		Object[][] before = readAll(file);
+		long length = file.length();
+		DBFTable table = new DBFTable(file);
+		long reclaimed;
+		try {
+			table.markDeleted(0);
+			table.markDeleted(2);
+			table.markDeleted(3);
+			table.markDeleted(before.length - 1);
+			reclaimed = table.pack();
+			Assert.assertEquals(before.length - 4, table.getRecordCount());
+			Assert.assertFalse(table.isDeleted(0));
+			Assert.assertEquals(0, table.pack());
+			table.updateField(0, 0, before[1][0]);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Assert.assertTrue(reclaimed > 0);
+		Assert.assertEquals(length - reclaimed, file.length());
+		Object[][] after = readAll(file);
+		Assert.assertEquals(before.length - 4, after.length);
+		int j = 0;
+		for (int i = 0; i < before.length; i++) {
+			if (i == 0 || i == 2 || i == 3 || i == before.length - 1) {
+				continue;
+			}
+			for (int k = 0; k < before[i].length; k++) {
+				assertValue(before[i][k], after[j][k]);
+			}
+			j++;
+		}
+	}
+
+	@Test
+	public void testPackWithMemo() throws IOException {
+		File dbf = File.createTempFile("pack", ".dbf");
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.deleteOnExit();
+		fpt.deleteOnExit();
+		byte[] big = new byte[20 * 1024];
+		for (int i = 0; i < big.length; i++) {
+			big[i] = (byte) (i * 31);
+		}
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.CHARACTER, 5),
+					new DBFField("NOTES", DBFDataType.MEMO, 4), new DBFField("DATA", DBFDataType.BLOB)});
+			writer.setMemoFile(fpt);
+			writer.addRecord(new Object[] {"1", "First note", big});
+			writer.addRecord(new Object[] {"2", "Second note", new byte[] {1, 2, 3}});
+			writer.addRecord(new Object[] {"3", null, big});
+			writer.addRecord(new Object[] {"4", "Fourth note", null});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		long length = dbf.length() + fpt.length();
+		DBFTable table = new DBFTable(dbf);
+		long reclaimed;
+		try {
+			table.markDeleted(0);
+			table.markDeleted(2);
+			reclaimed = table.pack(fpt);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		Assert.assertTrue(reclaimed > 2 * big.length);
+		Assert.assertEquals(length - reclaimed, dbf.length() + fpt.length());
+
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(fpt);
+			DBFRow row = reader.nextRow();
+			Assert.assertEquals("2", row.getString("ID"));
+			Assert.assertEquals("Second note", row.getString("NOTES"));
+			Assert.assertArrayEquals(new byte[] {1, 2, 3}, row.getBytes("DATA"));
+			row = reader.nextRow();
+			Assert.assertEquals("4", row.getString("ID"));
+			Assert.assertEquals("Fourth note", row.getString("NOTES"));
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testPackSharedMemoBlocks() throws IOException {
+		File dbf = File.createTempFile("pack", ".dbf");
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.deleteOnExit();
+		fpt.deleteOnExit();
+		byte[][] values = new byte[5][10 * 1024];
+		for (int i = 0; i < values.length; i++) {
+			Arrays.fill(values[i], (byte) i);
+		}
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.CHARACTER, 5),
+					new DBFField("DATA", DBFDataType.BLOB, 4)});
+			writer.setMemoFile(fpt);
+			for (int i = 0; i < values.length; i++) {
+				writer.addRecord(new Object[] {Integer.toString(i), values[i]});
+			}
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		// records 1 to 3 reference the value of record 0, as FoxPro tables often do
+		try (RandomAccessFile raf = new RandomAccessFile(dbf, "rw")) {
+			raf.seek(8);
+			int headerLength = Short.reverseBytes(raf.readShort()) & 0xFFFF;
+			int recordLength = Short.reverseBytes(raf.readShort()) & 0xFFFF;
+			byte[] block = new byte[4];
+			raf.seek(headerLength + 6);
+			raf.readFully(block);
+			for (int i = 1; i <= 3; i++) {
+				raf.seek(headerLength + i * recordLength + 6);
+				raf.write(block);
+			}
+		}
+		long length = dbf.length() + fpt.length();
+		DBFTable table = new DBFTable(dbf);
+		long reclaimed;
+		try {
+			table.markDeleted(4);
+			reclaimed = table.pack(fpt);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		// the header and one value, copied once
+		Assert.assertEquals(512 + (8 + 10 * 1024 + 63) / 64 * 64, fpt.length());
+		Assert.assertEquals(length - reclaimed, dbf.length() + fpt.length());
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(fpt);
+			for (int i = 0; i < 4; i++) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals(Integer.toString(i), row.getString("ID"));
+				Assert.assertArrayEquals(values[0], row.getBytes("DATA"));
+			}
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testPackAcrossChunks() throws IOException {
+		File file = File.createTempFile("pack", ".dbf");
+		file.delete();
+		file.deleteOnExit();
+		int count = 5000;
+		DBFWriter writer = new DBFWriter(file);
+		try {
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.NUMERIC, 10),
+					new DBFField("NAME", DBFDataType.CHARACTER, 40)});
+			for (int i = 0; i < count; i++) {
+				writer.addRecord(new Object[] {i, "Name " + i});
+			}
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFTable table = new DBFTable(file);
+		try {
+			// nothing to reclaim, a single run bigger than a chunk
+			Assert.assertEquals(0, table.pack());
+			for (int i = 0; i < count; i += 7) {
+				table.markDeleted(i);
+			}
+			table.pack();
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			int expected = 0;
+			DBFRow row;
+			while ((row = reader.nextRow()) != null) {
+				if (expected % 7 == 0) {
+					expected++;
+				}
+				Assert.assertEquals(expected, row.getInt("ID"));
+				Assert.assertEquals("Name " + expected, row.getString("NAME"));
+				expected++;
+			}
+			Assert.assertEquals(count, expected);
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testPackRestoresFilesOnFailure() throws IOException {
+		final File dbf = File.createTempFile("pack", ".dbf");
+		File dbt = new File(dbf.getPath().replace(".dbf", ".dbt"));
+		dbf.deleteOnExit();
+		dbt.deleteOnExit();
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.CHARACTER, 5),
+					new DBFField("NOTES", DBFDataType.MEMO)});
+			writer.setMemoFile(dbt);
+			writer.addRecord(new Object[] {"1", "First note"});
+			writer.addRecord(new Object[] {"2", "Second note"});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFTable table = new DBFTable(dbf) {
+			@Override
+			void moveFile(File source, File target) throws IOException {
+				if (target.equals(dbf)) {
+					throw new IOException("Cannot replace " + target);
+				}
+				super.moveFile(source, target);
+			}
+		};
+		try {
+			table.markDeleted(0);
+			byte[] dbfContent = Files.readAllBytes(dbf.toPath());
+			byte[] dbtContent = Files.readAllBytes(dbt.toPath());
+			try {
+				table.pack(dbt);
+				Assert.fail("DBF file replaced");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			Assert.assertArrayEquals(dbfContent, Files.readAllBytes(dbf.toPath()));
+			Assert.assertArrayEquals(dbtContent, Files.readAllBytes(dbt.toPath()));
+			// the table is still usable
+			Assert.assertEquals(2, table.getRecordCount());
+			Assert.assertTrue(table.isDeleted(0));
+			table.undelete(0);
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(dbt);
+			Assert.assertEquals("First note", reader.nextRow().getString("NOTES"));
+			Assert.assertEquals("Second note", reader.nextRow().getString("NOTES"));
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	private static int fieldIndex(File file, String name) {
+		DBFTable table = new DBFTable(file);
+		try {
+			for (int i = 0; i < table.getFieldCount(); i++) {
+				if (table.getField(i).getName().equalsIgnoreCase(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+	}
+
+	private static void assertValue(Object expected, Object actual) {
+		if (expected instanceof BigDecimal && actual instanceof BigDecimal) {
+			Assert.assertEquals(0, ((BigDecimal) expected).compareTo((BigDecimal) actual));
+		}
+		else {
+			Assert.assertEquals(expected, actual);
+		}
+	}
+
+	private static String fieldName(File file, int index) {
+		DBFTable table = new DBFTable(file);
+		try {
+			return table.getField(index).getName();
+		}
+		finally {
+			DBFUtils.close(table);
+		}
+	}
+
+	private static File copy(String fileName) throws IOException {
+		File file = File.createTempFile("table", ".dbf");
+		file.deleteOnExit();
+		Files.copy(new File(fileName).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+
+	private static Object[][] readAll(File file) throws IOException {
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(file));
+			Object[][] records = new Object[reader.getRecordCount()][];
+			for (int i = 0; i < records.length; i++) {
+				records[i] = reader.nextRecord();
+			}
+			return records;
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+}
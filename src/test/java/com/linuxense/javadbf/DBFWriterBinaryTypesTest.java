@@ -0,0 +1,211 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DBFWriterBinaryTypesTest {
+
+	@Test
+	public void testVisualFoxProTypes() throws IOException {
+		File dbf = File.createTempFile("binary", ".dbf");
+		dbf.deleteOnExit();
+		Date date = new Date(1500000000123L);
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("NAME", DBFDataType.CHARACTER, 10),
+					new DBFField("COUNT", DBFDataType.LONG), new DBFField("RATIO", DBFDataType.DOUBLE),
+					new DBFField("PRICE", DBFDataType.CURRENCY), new DBFField("CREATED", DBFDataType.TIMESTAMP)});
+			writer.addRecord(new Object[] {"first", 42, 0.125, new BigDecimal("12.3456"), date});
+			writer.addRecord(new Object[] {"second", -7L, -1e100, -92233720368.5477, null});
+			writer.addRecord(new Object[] {"third", Integer.MAX_VALUE, Double.NaN, new BigDecimal("922337203685477.5807"), date});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		Assert.assertEquals(DBFHeader.SIG_VISUAL_FOXPRO, readByte(dbf, 0));
+		Assert.assertEquals(32 + 5 * 32 + 1 + 263, readByte(dbf, 8) & 0xFF | (readByte(dbf, 9) & 0xFF) << 8);
+		Assert.assertEquals(32 + 5 * 32 + 1 + 263 + 3 * (1 + 10 + 4 + 8 + 8 + 8) + 1, dbf.length());
+
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			Assert.assertEquals(3, reader.getRecordCount());
+			Object[] row = reader.nextRecord();
+			Assert.assertEquals("first", row[0]);
+			Assert.assertEquals(42, row[1]);
+			Assert.assertEquals(0.125, row[2]);
+			Assert.assertEquals(new BigDecimal("12.3456"), row[3]);
+			Assert.assertEquals(date, row[4]);
+			row = reader.nextRecord();
+			Assert.assertEquals(-7, row[1]);
+			Assert.assertEquals(-1e100, row[2]);
+			Assert.assertEquals(new BigDecimal("-92233720368.5477"), row[3]);
+			Assert.assertNull(row[4]);
+			row = reader.nextRecord();
+			Assert.assertEquals(Integer.MAX_VALUE, row[1]);
+			Assert.assertEquals(Double.NaN, row[2]);
+			Assert.assertEquals(new BigDecimal("922337203685477.5807"), row[3]);
+			Assert.assertNull(reader.nextRecord());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testDBase7Autoincrement() throws IOException {
+		File dbf = File.createTempFile("binary", ".dbf");
+		dbf.delete();
+		dbf.deleteOnExit();
+		Date date = new Date(1500000000123L);
+		DBFField id = new DBFField("ID", DBFDataType.AUTOINCREMENT);
+		id.setNextAutoincrementValue(10);
+		DBFWriter writer = new DBFWriter(dbf);
+		try {
+			writer.setFields(new DBFField[] {id, new DBFField("NAME", DBFDataType.CHARACTER, 10),
+					new DBFField("CREATED", DBFDataType.TIMESTAMP_DBASE7)});
+			writer.addRecord(new Object[] {null, "first", date});
+			writer.addRecord(new Object[] {20, "second", null});
+			writer.addRecord(new Object[] {null, "third", date});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		Assert.assertEquals(DBFHeader.SIG_DBASE_7, readByte(dbf, 0));
+
+		writer = new DBFWriter(dbf);
+		try {
+			writer.addRecord(new Object[] {null, "fourth", null});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		Assert.assertEquals(68 + 3 * 48 + 1 + 4 * (1 + 4 + 10 + 8) + 1, dbf.length());
+		// big endian with the sign bit flipped, as dBase 7 writes it
+		int firstId = 68 + 3 * 48 + 1 + 1;
+		Assert.assertEquals((byte) 0x80, readByte(dbf, firstId));
+		Assert.assertEquals(0, readByte(dbf, firstId + 1));
+		Assert.assertEquals(0, readByte(dbf, firstId + 2));
+		Assert.assertEquals(10, readByte(dbf, firstId + 3));
+
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			Assert.assertEquals(4, reader.getRecordCount());
+			Assert.assertEquals("NAME", reader.getField(1).getName());
+			Assert.assertEquals(23, reader.getField(0).getNextAutoincrementValue());
+			int[] ids = {10, 20, 21, 22};
+			String[] names = {"first", "second", "third", "fourth"};
+			for (int i = 0; i < ids.length; i++) {
+				Object[] row = reader.nextRecord();
+				Assert.assertEquals(ids[i], row[0]);
+				Assert.assertEquals(names[i], row[1]);
+				Assert.assertEquals(i % 2 == 0 ? date : null, row[2]);
+			}
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testDBase7MemoFormat() throws IOException {
+		File dbf = File.createTempFile("binary", ".dbf");
+		File dbt = new File(dbf.getPath().replace(".dbf", ".dbt"));
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.delete();
+		dbf.deleteOnExit();
+		dbt.deleteOnExit();
+		DBFWriter writer = new DBFWriter(dbf);
+		try {
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT),
+					new DBFField("NOTES", DBFDataType.MEMO)});
+			try {
+				writer.setMemoFile(fpt);
+				Assert.fail("FPT memo file set on a dBase 7 table");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			Assert.assertFalse(fpt.exists());
+			writer.setMemoFile(dbt);
+			writer.addRecord(new Object[] {null, "note"});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		Assert.assertEquals(DBFHeader.SIG_DBASE_7_MEMO, readByte(dbf, 0));
+
+		// the memo file set before the fields
+		writer = new DBFWriter(new ByteArrayOutputStream());
+		try {
+			fpt.deleteOnExit();
+			writer.setMemoFile(fpt);
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT),
+					new DBFField("NOTES", DBFDataType.MEMO)});
+			Assert.fail("dBase 7 fields set with a FPT memo file");
+		}
+		catch (DBFException e) {
+			// expected
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testMixedDialects() {
+		DBFWriter writer = new DBFWriter(new ByteArrayOutputStream());
+		writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT),
+				new DBFField("PRICE", DBFDataType.CURRENCY)});
+	}
+
+	@Test(expected = DBFException.class)
+	public void testLongOutOfRange() {
+		DBFWriter writer = new DBFWriter(new ByteArrayOutputStream());
+		writer.setFields(new DBFField[] {new DBFField("COUNT", DBFDataType.LONG)});
+		writer.addRecord(new Object[] {1L << 40});
+	}
+
+	@Test(expected = DBFException.class)
+	public void testCurrencyOutOfRange() {
+		DBFWriter writer = new DBFWriter(new ByteArrayOutputStream());
+		writer.setFields(new DBFField[] {new DBFField("PRICE", DBFDataType.CURRENCY)});
+		writer.addRecord(new Object[] {1e15});
+	}
+
+	private static byte readByte(File file, int position) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(position);
+			return raf.readByte();
+		}
+	}
+}
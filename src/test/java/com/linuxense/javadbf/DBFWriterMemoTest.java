@@ -0,0 +1,205 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.linuxense.javadbf.mocks.FailInputStream;
+
+public class DBFWriterMemoTest {
+
+	@Test
+	public void testWriteFPT() throws IOException {
+		File dbf = File.createTempFile("memo", ".dbf");
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.deleteOnExit();
+		fpt.deleteOnExit();
+		byte[] big = new byte[200 * 1024 + 3];
+		for (int i = 0; i < big.length; i++) {
+			big[i] = (byte) (i * 31);
+		}
+		byte[] marks = new byte[] {1, 0x1A, 0x1A, 2};
+
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.CHARACTER, 5),
+					new DBFField("NOTES", DBFDataType.MEMO, 4), new DBFField("DATA", DBFDataType.BLOB)});
+			writer.setMemoFile(fpt);
+			writer.addRecord(new Object[] {"1", "First note", marks});
+			writer.addRecord(new Object[] {"2", null, new ByteArrayInputStream(big)});
+			writer.addRecord(new Object[] {"3", "Third note á", null});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		Assert.assertEquals(DBFHeader.SIG_FOXPRO_MEMO, readSignature(dbf));
+
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(fpt);
+			DBFRow row = reader.nextRow();
+			Assert.assertEquals("First note", row.getString("NOTES"));
+			Assert.assertArrayEquals(marks, row.getBytes("DATA"));
+			row = reader.nextRow();
+			Assert.assertArrayEquals(big, row.getBytes("DATA"));
+			row = reader.nextRow();
+			Assert.assertEquals("Third note á", row.getString("NOTES"));
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testAppendDBT() throws IOException {
+		File dbf = File.createTempFile("memo", ".dbf");
+		File dbt = new File(dbf.getPath().replace(".dbf", ".dbt"));
+		dbf.delete();
+		dbf.deleteOnExit();
+		dbt.deleteOnExit();
+		DBFField[] fields = new DBFField[] {new DBFField("ID", DBFDataType.NUMERIC, 5),
+				new DBFField("NOTES", DBFDataType.MEMO), new DBFField("DATA", DBFDataType.BINARY)};
+		char[] longText = new char[1500];
+		Arrays.fill(longText, 'x');
+
+		for (int session = 0; session < 2; session++) {
+			DBFWriter writer = null;
+			try {
+				writer = new DBFWriter(dbf);
+				if (session == 0) {
+					writer.setFields(fields);
+				}
+				writer.setMemoFile(dbt);
+				for (int i = 0; i < 50; i++) {
+					int id = session * 50 + i;
+					writer.addRecord(new Object[] {id, i % 2 == 0 ? "Note " + id : new String(longText),
+							new byte[] {(byte) id, 0x1A, 0x1A}});
+				}
+			}
+			finally {
+				DBFUtils.close(writer);
+			}
+		}
+		Assert.assertEquals(DBFHeader.SIG_DBASE_IV_MEMO, readSignature(dbf));
+
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(dbt);
+			for (int id = 0; id < 100; id++) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals(id, row.getInt("ID"));
+				Assert.assertEquals(id % 2 == 0 ? "Note " + id : new String(longText), row.getString("NOTES"));
+				Assert.assertArrayEquals(new byte[] {(byte) id, 0x1A, 0x1A}, row.getBytes("DATA"));
+			}
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testFailedStreamIsDiscarded() throws IOException {
+		File dbf = File.createTempFile("memo", ".dbf");
+		File fpt = new File(dbf.getPath().replace(".dbf", ".fpt"));
+		dbf.deleteOnExit();
+		fpt.deleteOnExit();
+		// bigger than the buffer, so part of the value is already in the file
+		InputStream failing = new SequenceInputStream(new ByteArrayInputStream(new byte[200 * 1024]), new FailInputStream());
+		DBFWriter writer = null;
+		try {
+			writer = new DBFWriter(new FileOutputStream(dbf));
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.CHARACTER, 5),
+					new DBFField("DATA", DBFDataType.BLOB)});
+			writer.setMemoFile(fpt);
+			writer.addRecord(new Object[] {"1", new byte[] {1}});
+			try {
+				writer.addRecord(new Object[] {"2", failing});
+				Assert.fail("Value written from a failing stream");
+			}
+			catch (DBFException e) {
+				// expected
+			}
+			writer.addRecord(new Object[] {"3", new byte[] {3}});
+			writer.flush();
+			// the header is written on flush, 3 blocks for two values after the header
+			Assert.assertEquals(512 + 2 * 64, fpt.length());
+			Assert.assertEquals(512 / 64 + 2, readBigEndianInt(fpt, 0));
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new FileInputStream(dbf));
+			reader.setMemoFile(fpt);
+			Assert.assertArrayEquals(new byte[] {1}, reader.nextRow().getBytes("DATA"));
+			Assert.assertArrayEquals(new byte[] {3}, reader.nextRow().getBytes("DATA"));
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testMemoFileNotSet() throws IOException {
+		DBFWriter writer = new DBFWriter(new ByteArrayOutputStream());
+		try {
+			writer.setFields(new DBFField[] {new DBFField("NOTES", DBFDataType.MEMO)});
+			writer.addRecord(new Object[] {"text"});
+		}
+		finally {
+			DBFUtils.close(writer);
+		}
+	}
+
+	private static int readBigEndianInt(File file, long position) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(position);
+			return raf.readInt();
+		}
+	}
+
+	private static byte readSignature(File dbf) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(dbf, "r");
+		try {
+			return raf.readByte();
+		}
+		finally {
+			raf.close();
+		}
+	}
+}
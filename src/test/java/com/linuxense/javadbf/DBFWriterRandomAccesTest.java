@@ -19,9 +19,11 @@ License along with this library.  If not, see <http://www.gnu.org/licenses/>.
 package com.linuxense.javadbf;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -80,6 +82,53 @@ public class DBFWriterRandomAccesTest {
         Assert.assertEquals(259L, outputFile.length());
 	}
 	
+	@Test
+	public void testWriteBufferSize() throws IOException {
+		DBFField[] fields = createFields();
+		File[] files = new File[2];
+		// records bigger than the buffer, and a buffer of several records
+		int[] bufferSizes = {10, 1000};
+		for (int n = 0; n < files.length; n++) {
+			files[n] = File.createTempFile("example", ".dbf");
+			files[n].deleteOnExit();
+			DBFWriter writer = new DBFWriter(files[n]);
+			try {
+				writer.setWriteBufferSize(bufferSizes[n]);
+				writer.setFields(fields);
+				for (int i = 0; i < 500; i++) {
+					writer.addRecord(new Object[] {Integer.toString(i), "John Smith " + i, i + 0.25});
+					if (i == 250) {
+						writer.setWriteBufferSize(300);
+					}
+				}
+			}
+			finally {
+				writer.close();
+			}
+			writer = new DBFWriter(files[n]);
+			try {
+				writer.addRecord(new Object[] {"500", "John Smith 500", 500.25});
+			}
+			finally {
+				writer.close();
+			}
+		}
+		Assert.assertArrayEquals(Files.readAllBytes(files[0].toPath()), Files.readAllBytes(files[1].toPath()));
+		DBFReader reader = new DBFReader(new FileInputStream(files[0]));
+		try {
+			Assert.assertEquals(501, reader.getRecordCount());
+			for (int i = 0; i <= 500; i++) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals("John Smith " + i, row.getString("emp_name"));
+				Assert.assertEquals(i + 0.25, row.getDouble("salary"), 0.001);
+			}
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			reader.close();
+		}
+	}
+
 	private DBFField[] createFields() {
 		DBFField[] fields = new DBFField[3];
 
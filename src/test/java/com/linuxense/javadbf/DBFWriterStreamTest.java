@@ -18,6 +18,8 @@ License along with this library.  If not, see <http://www.gnu.org/licenses/>.
 */
 package com.linuxense.javadbf;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Date;
 
@@ -41,6 +43,111 @@ public class DBFWriterStreamTest {
 		Assert.assertEquals(562L, output.getCount());
 	}
 
+	@Test
+	public void testStreamingMode() throws IOException {
+		Date date = new Date();
+		byte[] expected = writeRecords(date, 0);
+		Assert.assertArrayEquals(expected, writeRecords(date, 1));
+		Assert.assertArrayEquals(expected, writeRecords(date, 2));
+		DBFReader reader = null;
+		try {
+			reader = new DBFReader(new ByteArrayInputStream(expected));
+			Assert.assertEquals(1000, reader.getRecordCount());
+			for (int i = 0; i < 1000; i++) {
+				DBFRow row = reader.nextRow();
+				Assert.assertEquals("Name " + i, row.getString("emp_name"));
+			}
+			Assert.assertNull(reader.nextRow());
+		}
+		finally {
+			DBFUtils.close(reader);
+		}
+	}
+
+	@Test
+	public void testStreamingModeWithoutRecords() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(generateFields());
+			writer.setStreamingMode(true);
+		}
+		NullOutputStream expected = new NullOutputStream();
+		try (DBFWriter writer = new DBFWriter(expected)) {
+			writer.setFields(generateFields());
+		}
+		Assert.assertEquals(expected.getCount(), output.size());
+	}
+
+	@Test(expected = DBFException.class)
+	public void testMoreRecordsThanDeclared() throws DBFException {
+		try (DBFWriter writer = new DBFWriter(new NullOutputStream())) {
+			writer.setFields(generateFields());
+			writer.setRecordCount(1);
+			writer.addRecord(new Object[] { 1, "Neo", 10001.10, new Date(), true });
+			writer.addRecord(new Object[] { 2, "Morfeo", 1000.0, new Date(), true });
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testLessRecordsThanDeclared() throws DBFException {
+		try (DBFWriter writer = new DBFWriter(new NullOutputStream())) {
+			writer.setFields(generateFields());
+			writer.setRecordCount(2);
+			writer.addRecord(new Object[] { 1, "Neo", 10001.10, new Date(), true });
+		}
+	}
+
+	@Test
+	public void testDeclaredCountAutoincrement() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DBFField id = new DBFField("ID", DBFDataType.AUTOINCREMENT);
+		id.setNextAutoincrementValue(10);
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(new DBFField[] {id, new DBFField("NAME", DBFDataType.CHARACTER, 10)});
+			writer.setRecordCount(3);
+			writer.addRecord(new Object[] {null, "first"});
+			writer.addRecord(new Object[] {5, "second"});
+			writer.addRecord(new Object[] {null, "third"});
+		}
+		try (DBFReader reader = new DBFReader(new ByteArrayInputStream(output.toByteArray()))) {
+			Assert.assertEquals(13, reader.getField(0).getNextAutoincrementValue());
+			Assert.assertEquals(10, reader.nextRecord()[0]);
+			Assert.assertEquals(5, reader.nextRecord()[0]);
+			Assert.assertEquals(11, reader.nextRecord()[0]);
+		}
+	}
+
+	@Test(expected = DBFException.class)
+	public void testDeclaredCountAutoincrementBeyondHeader() throws DBFException {
+		try (DBFWriter writer = new DBFWriter(new NullOutputStream())) {
+			writer.setFields(new DBFField[] {new DBFField("ID", DBFDataType.AUTOINCREMENT)});
+			writer.setRecordCount(2);
+			writer.addRecord(new Object[] {null});
+			writer.addRecord(new Object[] {3});
+		}
+	}
+
+	/**
+	 * Writes 1000 records, in memory (0), with the declared count (1) or
+	 * through a temporary file (2)
+	 */
+	private byte[] writeRecords(Date date, int mode) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (DBFWriter writer = new DBFWriter(output)) {
+			writer.setFields(generateFields());
+			if (mode == 1) {
+				writer.setRecordCount(1000);
+			}
+			else if (mode == 2) {
+				writer.setStreamingMode(true);
+			}
+			for (int i = 0; i < 1000; i++) {
+				writer.addRecord(new Object[] { i, "Name " + i, i * 1.5, date, i % 2 == 0 });
+			}
+		}
+		return output.toByteArray();
+	}
+
 	@Test(expected = DBFException.class)
 	public void testFieldsCannotSetTwice() throws DBFException {
 		NullOutputStream output = new NullOutputStream();
@@ -0,0 +1,79 @@
+/*
+
+(C) Copyright 2017 Alberto Fernández <infjaf@gmail.com>
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3.0 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package com.linuxense.javadbf;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DateDecodingTest {
+
+	private static final String[] TIME_ZONES = {"UTC", "Europe/Madrid", "America/Sao_Paulo", "Asia/Tehran", "Pacific/Apia", "America/Havana"};
+
+	@Test
+	public void testDatesSameAsCalendar() throws IOException {
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		try {
+			for (String timeZone : TIME_ZONES) {
+				TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+				DBFReader reader = null;
+				try {
+					reader = new DBFReader(new FileInputStream("src/test/resources/books.dbf"));
+					DBFField field = new DBFField("DATE", DBFDataType.DATE);
+					Calendar day = new GregorianCalendar(1900, Calendar.JANUARY, 1);
+					Calendar end = new GregorianCalendar(2040, Calendar.JANUARY, 1);
+					while (day.before(end)) {
+						assertDate(reader, field, day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1, day.get(Calendar.DAY_OF_MONTH));
+						day.add(Calendar.DAY_OF_MONTH, 1);
+					}
+					// lenient values
+					assertDate(reader, field, 2017, 13, 1);
+					assertDate(reader, field, 2017, 0, 0);
+					assertDate(reader, field, 2017, 2, 31);
+					assertDate(reader, field, 2016, 99, 99);
+					// before and around the gregorian calendar
+					assertDate(reader, field, 1582, 10, 15);
+					assertDate(reader, field, 1583, 0, 0);
+					assertDate(reader, field, 1000, 6, 1);
+					assertDate(reader, field, 9999, 12, 31);
+					Assert.assertNull(reader.getFieldValue(field, "        ".getBytes(StandardCharsets.US_ASCII), 0));
+					Assert.assertNull(reader.getFieldValue(field, "2017??01".getBytes(StandardCharsets.US_ASCII), 0));
+				}
+				finally {
+					DBFUtils.close(reader);
+				}
+			}
+		}
+		finally {
+			TimeZone.setDefault(defaultTimeZone);
+		}
+	}
+
+	private void assertDate(DBFReader reader, DBFField field, int year, int month, int day) throws IOException {
+		String text = String.format("%04d%02d%02d", year, month, day);
+		Object value = reader.getFieldValue(field, text.getBytes(StandardCharsets.US_ASCII), 0);
+		Assert.assertEquals(TimeZone.getDefault().getID() + " " + text, new GregorianCalendar(year, month - 1, day).getTime(), value);
+	}
+}
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -214,4 +215,32 @@ public class EncodingTest {
 		
 		Assert.assertEquals("ibm866", charsetString);
 	}
+
+	@Test
+	public void testCharacterEncodingSameAsTextPadding() {
+		String[] texts = {
+			"", "abc", "Castellón", "La Coruña de los Ángeles", "日本語のテキスト",
+			"mixed ascii and ñ", "\u20ac uro", "lone \ud83d", "\u0416\u0416\u0416\u0416\u0416\u0416"
+		};
+		Charset[] charsets = {
+			StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+			Charset.forName("windows-1252"), Charset.forName("Cp850"), Charset.forName("windows-1251"), StandardCharsets.UTF_16LE
+		};
+		for (Charset charset : charsets) {
+			for (int length = 1; length <= 12; length++) {
+				DBFField field = new DBFField("TEXT", DBFDataType.CHARACTER, length);
+				DBFRecordEncoder encoder = new DBFRecordEncoder(new DBFField[] {field}, charset);
+				for (String text : texts) {
+					byte[] expected = DBFUtils.textPadding(text, charset, length, DBFAlignment.LEFT, (byte) ' ');
+					byte[] record = encoder.encode(new Object[] {text});
+					Assert.assertArrayEquals(charset + " " + length + " " + text, expected,
+							Arrays.copyOfRange(record, 1, record.length));
+				}
+			}
+		}
+		// a surrogate pair that doesn't fit is not split
+		DBFField field = new DBFField("TEXT", DBFDataType.CHARACTER, 4);
+		byte[] record = new DBFRecordEncoder(new DBFField[] {field}, StandardCharsets.UTF_8).encode(new Object[] {"a\ud83d\ude00"});
+		Assert.assertArrayEquals("a   ".getBytes(StandardCharsets.US_ASCII), Arrays.copyOfRange(record, 1, record.length));
+	}
 }
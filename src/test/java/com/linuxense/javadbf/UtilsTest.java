@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -86,6 +87,43 @@ public class UtilsTest {
 				new String(DBFUtils.doubleFormating(new Double(5.05), Charset.defaultCharset(), 5, 2))
 			);
 	}
+	@Test
+	public void testFixedPointSameAsDecimalFormat() {
+		Number[] values = {0, -0.0, -0.001, 0.005, 0.015, 0.125, 0.135, 0.145, 2.5, 3.5, -2.5, 1.005, 5.05,
+				123456789.125, 99.995, -99.995, 1e14 + 0.5, 12345678901234L, Long.MAX_VALUE, Long.MIN_VALUE,
+				(short) -12, (byte) 7, 1.1f, -0.3f, Double.NaN, Double.POSITIVE_INFINITY, 1e300,
+				new BigDecimal("0.125"), new BigDecimal("-0.001"), new BigDecimal("123.4567"),
+				new BigDecimal("12345678901234567890.5"), new java.math.BigInteger("42")};
+		for (Number value : values) {
+			assertSameFormat(value);
+		}
+		java.util.Random random = new java.util.Random(1);
+		for (int i = 0; i < 500; i++) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+			if (random.nextBoolean()) {
+				// values with few decimals, near ties
+				value = Math.round(value * 1000) / 1000.0;
+			}
+			assertSameFormat(value);
+			assertSameFormat(BigDecimal.valueOf(value));
+			assertSameFormat(random.nextInt());
+			assertSameFormat((float) value);
+		}
+	}
+
+	private static void assertSameFormat(Number value) {
+		for (int length = 1; length <= 20; length++) {
+			for (int decimals = 0; decimals <= Math.min(length, 8); decimals++) {
+				String expected = new String(DBFUtils.formatWithDecimalFormat(value, ISO_8859_1, length, decimals), ISO_8859_1);
+				byte[] out = new byte[length + 2];
+				if (DBFUtils.formatFixedPoint(value, length, decimals, out, 1)) {
+					Assert.assertEquals(value + " " + length + "," + decimals, expected, new String(out, 1, length, ISO_8859_1));
+				}
+				Assert.assertEquals(expected, new String(DBFUtils.doubleFormating(value, ISO_8859_1, length, decimals), ISO_8859_1));
+			}
+		}
+	}
+
 	@Test
 	public void testLittleEndian() {
 		// TODO
@@ -158,4 +196,29 @@ public class UtilsTest {
 		
 	}
 
+	@Test
+	public void testReadNumericStoredAsText() {
+		String[] values = {"123", "  -45.60", "+7", "0.0001", ".5", "1,25", "  000012.340", "-0.00",
+			"123456789012345678", "1234567890123456789012", "1.5E3", "99999999999999.9999", "-9223372036854775"};
+		for (String value : values) {
+			byte[] data = (" " + value + " ").getBytes(StandardCharsets.US_ASCII);
+			BigDecimal expected = new BigDecimal(value.trim().replace(',', '.'));
+			assertEquals(value, expected, DBFUtils.readNumericStoredAsText(data, 1, data.length - 2));
+			assertEquals(value, expected.longValue(), DBFUtils.readNumericStoredAsLong(data, 1, data.length - 2));
+			assertEquals(value, expected.doubleValue(), DBFUtils.readNumericStoredAsDouble(data, 1, data.length - 2), 0.0);
+		}
+		assertEquals(BigDecimal.ZERO, DBFUtils.readNumericStoredAsText(".".getBytes(), 0, 1));
+		assertNull(DBFUtils.readNumericStoredAsText("    ".getBytes(), 0, 4));
+		assertNull(DBFUtils.readNumericStoredAsText("\0\0\0".getBytes(), 0, 3));
+		assertNull(DBFUtils.readNumericStoredAsText("12?4".getBytes(), 0, 4));
+		assertNull(DBFUtils.readNumericStoredAsText("****".getBytes(), 0, 4));
+		assertEquals(0, DBFUtils.readNumericStoredAsLong("    ".getBytes(), 0, 4));
+		assertEquals(0.0, DBFUtils.readNumericStoredAsDouble("****".getBytes(), 0, 4), 0.0);
+	}
+
+	@Test(expected = DBFException.class)
+	public void testReadNumericStoredAsTextInvalid() {
+		DBFUtils.readNumericStoredAsText("12-3".getBytes(), 0, 4);
+	}
+
 }